@@ -4,6 +4,7 @@ import com.osp.issue.dto.BaseAlarmDto;
 
 import java.lang.reflect.Field;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 /**
  * 附加目的地
@@ -19,6 +20,31 @@ public interface Appender {
      */
     void append(BaseAlarmDto baseAlarmDto);
 
+    /**
+     * 批量附加目的地，appender配置了batchSize时按批调用，默认逐条处理
+     *
+     * @param baseAlarmDtos 一个刷新窗口内的报警信息
+     */
+    default void appendBatch(List<BaseAlarmDto> baseAlarmDtos) {
+        baseAlarmDtos.forEach(this::append);
+    }
+
+    /**
+     * 停机时释放资源，在剩余报警处理完后调用
+     */
+    default void close() {
+        // 默认无资源需要释放
+    }
+
+    /**
+     * 停机或热加载替换时释放资源，在剩余报警处理完后调用；释放过程可能较慢的appender应覆盖此方法，在截止时间前返回
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     */
+    default void close(long deadline) {
+        close();
+    }
+
     /**
      * 根据配置文件初始化appender
      *
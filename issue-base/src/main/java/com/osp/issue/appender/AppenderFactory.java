@@ -0,0 +1,29 @@
+package com.osp.issue.appender;
+
+import com.osp.issue.util.PluginConfig;
+
+/**
+ * appender工厂：通过ServiceLoader注册（META-INF/services/com.osp.issue.appender.AppenderFactory），
+ * 按名称匹配alarm.yml中appenders下的key，无需反射创建与装配
+ *
+ * @author huangqiaowei
+ * @since 2019-07-22 10:40
+ **/
+public interface AppenderFactory {
+
+    /**
+     * 名称，即alarm.yml中appenders下的key
+     *
+     * @return 名称
+     */
+    String getName();
+
+    /**
+     * 创建并初始化appender
+     *
+     * @param config 配置块
+     * @return appender
+     * @throws IllegalArgumentException 配置有误
+     */
+    Appender create(PluginConfig config);
+}
@@ -1,9 +1,13 @@
 package com.osp.issue.appender.impl;
 
-import com.google.common.collect.Maps;
 import com.osp.issue.appender.Appender;
 import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.dto.Severity;
+import com.osp.issue.util.CompiledTemplate;
 import com.osp.issue.util.ExchangeClient;
+import com.osp.issue.util.HtmlEscapes;
+import com.osp.issue.util.PluginConfig;
+import com.osp.issue.util.StackTraceRenderer;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
@@ -12,17 +16,11 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 报警发送
@@ -34,12 +32,25 @@ import java.util.Optional;
 @Data
 public class EmailAlarmAppender implements Appender {
     private static final String DEFAULT_HOST = "webmail.osp.com";
-    private static List<String> recipientCcsStr;
+    private static final int INITIAL_VALUE_CAPACITY = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+    private static final int DEFAULT_RENDER_CACHE_SIZE = 256;
+    private static final long DEFAULT_RENDER_CACHE_MAX_CHARS = 4 * 1024 * 1024;
+    private static final long DEFAULT_CLOSE_TIMEOUT = 5000;
+    /**
+     * 渲染缓冲区，按线程复用
+     */
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_VALUE_CAPACITY));
     /**
      * 抄送人
      */
     private String recipientCcs;
 
+    /**
+     * 抄送人列表，每个appender实例各自持有，多个邮件appender或热加载时互不覆盖
+     */
+    private List<String> recipientCcsStr;
+
     /**
      * 收件人
      */
@@ -50,6 +61,21 @@ public class EmailAlarmAppender implements Appender {
      */
     private String templateStr;
 
+    /**
+     * 预编译的邮件模版
+     */
+    private CompiledTemplate<BaseAlarmDto> template;
+
+    /**
+     * 批量模式下的汇总邮件模版
+     */
+    private CompiledTemplate<List<BaseAlarmDto>> digestTemplate;
+
+    /**
+     * 汇总邮件中每条报警的折叠明细模版
+     */
+    private CompiledTemplate<BaseAlarmDto> digestItemTemplate;
+
     /**
      * 邮件标题
      */
@@ -67,43 +93,101 @@ public class EmailAlarmAppender implements Appender {
 
     private String bottom;
 
+    /**
+     * EWS地址，默认 https://webmail.osp.com/ews/Exchange.asmx，可指向本地桩服务做测试
+     */
+    private String url;
+
+    /**
+     * 邮件客户端，会话在多次发送间复用
+     */
+    private ExchangeClient client;
+
+    /**
+     * 带熔断、重试与死信缓冲的发送
+     */
+    private ResilientSender sender;
+
+    /**
+     * 堆栈渲染，未调用configure时使用默认配置
+     */
+    private StackTraceRenderer stackTraceRenderer = StackTraceRenderer.defaults();
+
+    /**
+     * 按指纹缓存的堆栈与参数片段，为null时不缓存
+     */
+    private RenderCache renderCache;
+
     /**
      * 环境 默认正式环境
      */
     private String env = "prod";
 
     /**
-     * 单例：只能让实例一次
+     * 兼容按反射加载的方式
      */
     @Override
     public void init(LinkedHashMap map) {
-        // 读取配置文件，装配appender
-        Class<? extends EmailAlarmAppender> emailAlarmAppenderClass = this.getClass();
-        Field[] fields = emailAlarmAppenderClass.getDeclaredFields();
-        for (Field field : fields) {
-            try {
-                field.set(this, map.get(field.getName()));
-            } catch (IllegalAccessException e) {
-                // ignore
-            }
-        }
-        recipientCcsStr = Arrays.asList(recipientCcs.split("、"));
-        String templateFileName = "Template.html";
-        // 读取邮件模版文件
+        configure(new PluginConfig(getClass().getSimpleName(), map));
+    }
+
+    /**
+     * 按配置装配：读取配置项、预编译模版并创建邮件客户端
+     *
+     * @param config 配置块
+     */
+    public void configure(PluginConfig config) {
+        recipientCcs = config.getString("recipientCcs", "");
+        recipientTo = config.require("recipientTo");
+        subject = config.getString("subject");
+        username = config.require("username");
+        password = config.getString("password");
+        bottom = config.getString("bottom");
+        url = config.getString("url");
+        env = config.getString("env", env);
+        recipientCcsStr = config.getList("recipientCcs");
+        stackTraceRenderer = new StackTraceRenderer(
+                listOrDefault(config.getList("highlightPackages"), StackTraceRenderer.DEFAULT_HIGHLIGHT_PACKAGES),
+                listOrDefault(config.getList("collapsePackages"), StackTraceRenderer.DEFAULT_COLLAPSE_PACKAGES),
+                config.getInt("collapseMinFrames", StackTraceRenderer.DEFAULT_COLLAPSE_MIN_FRAMES),
+                config.getInt("stackMaxDepth", 0));
+        int renderCacheSize = config.getInt("renderCacheSize", DEFAULT_RENDER_CACHE_SIZE);
+        renderCache = renderCacheSize <= 0 ? null : new RenderCache(config.getName(), stackTraceRenderer,
+                renderCacheSize, config.getLong("renderCacheMaxChars", DEFAULT_RENDER_CACHE_MAX_CHARS));
+        templateStr = loadTemplate("Template.html");
+        template = CompiledTemplate.compile(templateStr, this::bind);
+        digestTemplate = CompiledTemplate.compile(loadTemplate("DigestTemplate.html"), this::bindDigest);
+        digestItemTemplate = CompiledTemplate.compile(loadTemplate("DigestItem.html"), this::bind);
+        client = new ExchangeClient.ExchangeClientBuilder().hostname(DEFAULT_HOST).url(url)
+                .exchangeVersion(ExchangeVersion.Exchange2010).username(username).password(password)
+                .timeout(config.getInt("timeout", 0))
+                .recipientTo(recipientTo).recipientCc(recipientCcsStr).subject(subject).build();
+        sender = new ResilientSender(client, config);
+    }
+
+    private static List<String> listOrDefault(List<String> list, List<String> defaultList) {
+        return list.isEmpty() ? defaultList : list;
+    }
+
+    /**
+     * 读取类路径下的邮件模版文件
+     *
+     * @param templateFileName 模版文件名
+     * @return 模版内容
+     */
+    private String loadTemplate(String templateFileName) {
         InputStream resourceAsStream = this.getClass().getClassLoader().getResourceAsStream(templateFileName);
         if (resourceAsStream == null) {
             throw new IllegalStateException("类路径加载模板文件失败：" + templateFileName);
         }
 
-        BufferedReader reader = new BufferedReader(new InputStreamReader(resourceAsStream));
-        try {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resourceAsStream, StandardCharsets.UTF_8))) {
             String line;
             StringBuilder builder = new StringBuilder();
             while ((line = reader.readLine()) != null) {
                 builder.append(line);
             }
-
-            templateStr = builder.toString();
+            return builder.toString();
         } catch (IOException e) {
             throw new IllegalStateException("读取模板文件失败：" + templateFileName, e);
         }
@@ -116,94 +200,250 @@ public class EmailAlarmAppender implements Appender {
      */
     @Override
     public void append(BaseAlarmDto baseAlarmDto) {
-        String message = makeupEmailContent(baseAlarmDto);
-        ExchangeClient client = new ExchangeClient.ExchangeClientBuilder().hostname(DEFAULT_HOST)
-                .exchangeVersion(ExchangeVersion.Exchange2010).username(username).password(password)
-                .recipientTo(recipientTo).recipientCc(recipientCcsStr).subject(subject).message(message).build();
-        client.sendExchange();
+        // 发送失败时转入死信缓冲，熔断恢复后补发
+        sender.send(subjectOf(baseAlarmDto.getSeverity()), makeupEmailContent(baseAlarmDto));
+    }
+
+    /**
+     * 高级别报警的标题带级别前缀
+     */
+    private String subjectOf(Severity severity) {
+        return severity != null && severity.isPriority() ? "【" + severity + "】" + subject : subject;
     }
 
-    private String makeupEmailContent(BaseAlarmDto baseAlarmDto) {
-        Map<String, String> map = getParamsMap(baseAlarmDto);
-        // 获取文件字符串
-        StringBuilder content = new StringBuilder();
+    /**
+     * 批量模式：一个刷新窗口内的报警合并为一封汇总邮件
+     *
+     * @param baseAlarmDtos 报警信息
+     */
+    @Override
+    public void appendBatch(List<BaseAlarmDto> baseAlarmDtos) {
+        if (baseAlarmDtos.size() == 1) {
+            append(baseAlarmDtos.get(0));
+            return;
+        }
+        StringBuilder content = buffer();
         try {
-            StringBuilder key = new StringBuilder();
-            BufferedReader template = new BufferedReader(new StringReader(templateStr));
-            boolean start = false;
-            while (true) {
-                int ch = template.read();
-                if (ch == -1) {
-                    template.close();
-                    return content.toString();
-                }
-                if ('}' == ch) {
-                    content.append(Optional.ofNullable(map.get(key.toString())).orElse(""));
-                    start = false;
-                    key = new StringBuilder();
-                    continue;
-                }
-                if ('$' == ch) {
-                    start = true;
-                    continue;
-                }
-                if (start) {
-                    if (' ' == ch) {
-                        continue;
-                    }
-                    if ('{' != ch) {
-                        key.append((char) ch);
-                    }
-                } else {
-                    content.append((char) ch);
-                }
+            digestTemplate.render(baseAlarmDtos, content);
+        } catch (Exception e) {
+            log.warn("生成汇总邮件正文失败，共" + baseAlarmDtos.size() + "条报警", e);
+        }
+        // 标题按批内最高级别加前缀，与单条报警一致
+        Severity highest = null;
+        for (BaseAlarmDto baseAlarmDto : baseAlarmDtos) {
+            Severity severity = baseAlarmDto.getSeverity();
+            if (severity != null && (highest == null || severity.compareTo(highest) > 0)) {
+                highest = severity;
             }
+        }
+        sender.send(subjectOf(highest) + "（汇总" + baseAlarmDtos.size() + "条）", content.toString());
+    }
+
+    /**
+     * 补发死信并关闭EWS会话，补发最多等待默认的关闭时长
+     */
+    @Override
+    public void close() {
+        close(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEFAULT_CLOSE_TIMEOUT));
+    }
+
+    /**
+     * 在截止时间前补发死信，之后关闭EWS会话
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     */
+    @Override
+    public void close(long deadline) {
+        if (sender != null) {
+            sender.close(deadline);
+        }
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    /**
+     * 渲染单条报警的邮件正文，包可见以便基准测试直接调用
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 邮件正文
+     */
+    String makeupEmailContent(BaseAlarmDto baseAlarmDto) {
+        StringBuilder content = buffer();
+        try {
+            template.render(baseAlarmDto, content);
         } catch (Exception e) {
             log.warn("生成邮件正文失败：" + baseAlarmDto.toString(), e);
         }
-
         return content.toString();
     }
 
     /**
-     * 发送邮件参数
+     * 获取当前线程的渲染缓冲区，过大时重建避免长期占用内存
      *
-     * @param baseAlarmDto 上下文信息
-     * @return 邮件内容参数map
-     */
-    private Map<String, String> getParamsMap(BaseAlarmDto baseAlarmDto) {
-        Map<String, String> map = Maps.newHashMap();
-        map.put("thread", Optional.ofNullable(baseAlarmDto.getThreadName()).orElse(""));
-        map.put("env", env);
-        map.put("operator", Optional.ofNullable(baseAlarmDto.getOperator()).orElse(""));
-        map.put("bottom", Optional.ofNullable(bottom).orElse(""));
-        map.put("time", baseAlarmDto.getExecutionTime().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-        map.put("place", Optional.ofNullable(baseAlarmDto.getPlace()).orElse(""));
-        map.put("errorMessage", Optional.ofNullable(baseAlarmDto.getErrorMessage()).orElse(""));
-        map.put("ip", baseAlarmDto.getIp());
-        if (Objects.nonNull(baseAlarmDto.getCause())) {
-            // 堆栈信息特殊处理
-            StringBuffer stackStr = new StringBuffer();
-            if (baseAlarmDto.getCause() != null) {
-                try (StringWriter stringWriter = new StringWriter();
-                    PrintWriter printWriter = new PrintWriter(stringWriter)) {
-                    baseAlarmDto.getCause().printStackTrace(printWriter);
-                    // 逐行读取，更换颜色和空格
-                    BufferedReader bf = new BufferedReader(new StringReader(stringWriter.toString()));
-                    bf.lines().forEach(line -> {
-                        boolean contaisosp = line.contains("osp");
-                        stackStr.append("&nbsp;&nbsp;&nbsp;&nbsp;")
-                            .append(contaisosp ? "<span style=\"color:#c0f\">" : "").append(line)
-                            .append(contaisosp ? "</span>" : "").append("<br>");
-                    });
-                    bf.close();
-                } catch (Exception e) {
-                    log.error("堆栈轨迹获取失败", e);
-                }
+     * @return 已清空的缓冲区
+     */
+    private StringBuilder buffer() {
+        StringBuilder content = BUFFER.get();
+        if (content.capacity() > MAX_RETAINED_BUFFER) {
+            content = new StringBuilder(template.getLiteralLength() + INITIAL_VALUE_CAPACITY);
+            BUFFER.set(content);
+        }
+        content.setLength(0);
+        return content;
+    }
+
+    /**
+     * 绑定汇总模板占位符
+     *
+     * @param key 占位符名称
+     * @return 模板段
+     */
+    private CompiledTemplate.Segment<List<BaseAlarmDto>> bindDigest(String key) {
+        switch (key) {
+            case "env":
+                return (dtos, out) -> HtmlEscapes.escape(env, out);
+            case "ip":
+                return (dtos, out) -> HtmlEscapes.escape(dtos.get(0).getIp(), out);
+            case "bottom":
+                return (dtos, out) -> HtmlEscapes.escape(bottom, out);
+            case "total":
+                return (dtos, out) -> out.append(dtos.size());
+            case "summary":
+                return this::writeSummary;
+            case "sections":
+                return (dtos, out) -> dtos.forEach(dto -> digestItemTemplate.render(dto, out));
+            default:
+                log.warn("汇总邮件模板中存在未知占位符：{}", key);
+                return null;
+        }
+    }
+
+    /**
+     * 汇总表：每条报警一行
+     *
+     * @param baseAlarmDtos 报警信息
+     * @param out           输出缓冲区
+     */
+    private void writeSummary(List<BaseAlarmDto> baseAlarmDtos, StringBuilder out) {
+        for (int i = 0; i < baseAlarmDtos.size(); i++) {
+            BaseAlarmDto baseAlarmDto = baseAlarmDtos.get(i);
+            out.append("<tr><td style=\"text-align: center\">").append(i + 1).append("</td><td>");
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(baseAlarmDto.getExecutionTime(), out);
+            out.append("</td><td>");
+            HtmlEscapes.escape(baseAlarmDto.getPlace(), out);
+            out.append("</td><td>");
+            HtmlEscapes.escape(baseAlarmDto.getErrorMessage(), out);
+            out.append("</td><td style=\"text-align: center\">");
+            writeCount(baseAlarmDto, out);
+            if (baseAlarmDto.getSuppressed() > 0) {
+                out.append("<br/>");
+                writeSuppressed(baseAlarmDto, out);
             }
-            map.put("stash", stackStr.toString());
+            out.append("</td></tr>");
+        }
+    }
+
+    /**
+     * 绑定模板占位符，模板编译时调用一次
+     *
+     * @param key 占位符名称
+     * @return 模板段
+     */
+    private CompiledTemplate.Segment<BaseAlarmDto> bind(String key) {
+        switch (key) {
+            case "thread":
+                return (dto, out) -> HtmlEscapes.escape(dto.getThreadName(), out);
+            case "env":
+                return (dto, out) -> HtmlEscapes.escape(env, out);
+            case "operator":
+                return (dto, out) -> HtmlEscapes.escape(dto.getOperator(), out);
+            case "bottom":
+                return (dto, out) -> HtmlEscapes.escape(bottom, out);
+            case "time":
+                return (dto, out) -> DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(dto.getExecutionTime(), out);
+            case "place":
+                return (dto, out) -> HtmlEscapes.escape(dto.getPlace(), out);
+            case "errorMessage":
+                return (dto, out) -> HtmlEscapes.escape(dto.getErrorMessage(), out);
+            case "ip":
+                return (dto, out) -> HtmlEscapes.escape(dto.getIp(), out);
+            case "count":
+                return this::writeCount;
+            case "suppressed":
+                return this::writeSuppressed;
+            case "severity":
+                return (dto, out) -> out.append(dto.getSeverity() == null ? Severity.NORMAL : dto.getSeverity());
+            case "stash":
+                return this::writeStackTrace;
+            case "extra":
+                return this::writeExtra;
+            default:
+                log.warn("邮件模板中存在未知占位符：{}", key);
+                return null;
+        }
+    }
+
+    /**
+     * 聚合报警展示次数与起止时间
+     *
+     * @param baseAlarmDto 上下文信息
+     * @param out          输出缓冲区
+     */
+    private void writeCount(BaseAlarmDto baseAlarmDto, StringBuilder out) {
+        out.append(baseAlarmDto.getCount());
+        if (baseAlarmDto.getCount() > 1 && baseAlarmDto.getFirstTime() != null) {
+            out.append("（");
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(baseAlarmDto.getFirstTime(), out);
+            out.append(" ~ ");
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(baseAlarmDto.getLastTime(), out);
+            out.append("）");
+        }
+    }
+
+    /**
+     * 限流抑制的报警数与起始时间，没有时为空
+     *
+     * @param baseAlarmDto 上下文信息
+     * @param out          输出缓冲区
+     */
+    private void writeSuppressed(BaseAlarmDto baseAlarmDto, StringBuilder out) {
+        if (baseAlarmDto.getSuppressed() <= 0) {
+            return;
+        }
+        out.append('+').append(baseAlarmDto.getSuppressed()).append("条被限流");
+        if (baseAlarmDto.getSuppressedSince() != null) {
+            out.append("（自");
+            DateTimeFormatter.ISO_LOCAL_TIME.formatTo(baseAlarmDto.getSuppressedSince().toLocalTime().withNano(0), out);
+            out.append("起）");
+        }
+    }
+
+    /**
+     * 堆栈信息：按异常快照直接渲染，折叠公共栈帧与框架栈帧，高亮业务包
+     *
+     * @param baseAlarmDto 上下文信息
+     * @param out          输出缓冲区
+     */
+    private void writeStackTrace(BaseAlarmDto baseAlarmDto, StringBuilder out) {
+        if (renderCache == null) {
+            stackTraceRenderer.render(baseAlarmDto.getException(), out);
+        } else {
+            renderCache.writeStackTrace(baseAlarmDto, out);
+        }
+    }
+
+    /**
+     * 额外信息（参数快照），同一指纹的参数不变时复用转义结果
+     *
+     * @param baseAlarmDto 上下文信息
+     * @param out          输出缓冲区
+     */
+    private void writeExtra(BaseAlarmDto baseAlarmDto, StringBuilder out) {
+        if (renderCache == null) {
+            HtmlEscapes.escape(baseAlarmDto.getExtra(), out);
+        } else {
+            renderCache.writeExtra(baseAlarmDto, out);
         }
-        map.put("extra", Optional.ofNullable(baseAlarmDto.getExtra()).orElse(""));
-        return map;
     }
 }
@@ -0,0 +1,26 @@
+package com.osp.issue.appender.impl;
+
+import com.osp.issue.appender.Appender;
+import com.osp.issue.appender.AppenderFactory;
+import com.osp.issue.util.PluginConfig;
+
+/**
+ * 邮件报警工厂
+ *
+ * @author huangqiaowei
+ * @since 2019-07-22 11:02
+ **/
+public class EmailAlarmAppenderFactory implements AppenderFactory {
+
+    @Override
+    public String getName() {
+        return "EmailAlarmAppender";
+    }
+
+    @Override
+    public Appender create(PluginConfig config) {
+        EmailAlarmAppender appender = new EmailAlarmAppender();
+        appender.configure(config);
+        return appender;
+    }
+}
@@ -0,0 +1,218 @@
+package com.osp.issue.appender.impl;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.dto.ThrowableSnapshot;
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.util.HtmlEscapes;
+import com.osp.issue.util.StackTraceRenderer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 渲染结果缓存：按报警指纹缓存堆栈各层栈帧与参数的HTML片段，报警风暴中同一异常只渲染一次。
+ * 指纹只覆盖栈顶的几个应用栈帧，命中时仍逐层比对类名与栈帧，不一致按未命中处理；
+ * 异常消息因常含单号等变量，不参与缓存，每次重新转义。按条数与字符数双重限制，超出时淘汰最久未用的条目
+ *
+ * @author huangqiaowei
+ * @since 2019-07-29 14:30
+ **/
+final class RenderCache {
+
+    private final StackTraceRenderer renderer;
+    private final int maxEntries;
+    private final long maxChars;
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+    private final LongAdder stackHits;
+    private final LongAdder stackMisses;
+    private final LongAdder extraHits;
+    private final LongAdder extraMisses;
+    private final LongAdder evictions;
+
+    /**
+     * @param name       appender名称，用于指标
+     * @param renderer   堆栈渲染器
+     * @param maxEntries 最多缓存的指纹数
+     * @param maxChars   缓存片段的总字符数上限
+     */
+    RenderCache(String name, StackTraceRenderer renderer, int maxEntries, long maxChars) {
+        this.renderer = renderer;
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        AlarmMetrics metrics = AlarmMetrics.getInstance();
+        String prefix = "appender." + name + ".renderCache.";
+        // 参数很少重复，与堆栈分开统计，避免拉低堆栈的命中率
+        this.stackHits = metrics.counter(prefix + "stack.hits");
+        this.stackMisses = metrics.counter(prefix + "stack.misses");
+        this.extraHits = metrics.counter(prefix + "extra.hits");
+        this.extraMisses = metrics.counter(prefix + "extra.misses");
+        this.evictions = metrics.counter(prefix + "evictions");
+        metrics.gauge(prefix + "size", this::size);
+        metrics.gauge(prefix + "chars", this::getChars);
+    }
+
+    /**
+     * 输出堆栈，首行每次重新渲染，各层栈帧取自缓存
+     *
+     * @param baseAlarmDto 报警信息
+     * @param out          输出缓冲区
+     */
+    void writeStackTrace(BaseAlarmDto baseAlarmDto, StringBuilder out) {
+        ThrowableSnapshot snapshot = baseAlarmDto.getException();
+        if (snapshot == null) {
+            return;
+        }
+        long fingerprint = baseAlarmDto.getFingerprint();
+        Entry entry = get(fingerprint);
+        if (entry != null && entry.frames != null && sameFrames(entry.snapshot, snapshot)) {
+            stackHits.increment();
+            boolean cause = false;
+            int level = 0;
+            for (ThrowableSnapshot current = snapshot; current != null; current = current.getCause()) {
+                renderer.renderHeader(current, cause, out);
+                out.append(entry.frames[level++]);
+                cause = true;
+            }
+            return;
+        }
+        stackMisses.increment();
+        int depth = 0;
+        for (ThrowableSnapshot current = snapshot; current != null; current = current.getCause()) {
+            depth++;
+        }
+        String[] frames = new String[depth];
+        boolean cause = false;
+        int level = 0;
+        for (ThrowableSnapshot current = snapshot; current != null; current = current.getCause()) {
+            renderer.renderHeader(current, cause, out);
+            int start = out.length();
+            renderer.renderFrames(current, out);
+            frames[level++] = out.substring(start);
+            cause = true;
+        }
+        put(fingerprint, new Entry(snapshot, frames, entry == null ? null : entry.extra,
+            entry == null ? null : entry.extraHtml));
+    }
+
+    /**
+     * 输出转义后的额外信息（参数快照），与缓存的原文相同时直接复用
+     *
+     * @param baseAlarmDto 报警信息
+     * @param out          输出缓冲区
+     */
+    void writeExtra(BaseAlarmDto baseAlarmDto, StringBuilder out) {
+        String extra = baseAlarmDto.getExtra();
+        if (extra == null) {
+            return;
+        }
+        long fingerprint = baseAlarmDto.getFingerprint();
+        Entry entry = get(fingerprint);
+        if (entry != null && extra.equals(entry.extra)) {
+            extraHits.increment();
+            out.append(entry.extraHtml);
+            return;
+        }
+        extraMisses.increment();
+        int start = out.length();
+        HtmlEscapes.escape(extra, out);
+        put(fingerprint, entry == null ? new Entry(null, null, extra, out.substring(start))
+            : new Entry(entry.snapshot, entry.frames, extra, out.substring(start)));
+    }
+
+    /**
+     * 逐层比对类名、栈帧与省略、折叠数，即renderFrames输出所依赖的全部内容
+     */
+    private static boolean sameFrames(ThrowableSnapshot cached, ThrowableSnapshot snapshot) {
+        ThrowableSnapshot a = cached;
+        ThrowableSnapshot b = snapshot;
+        while (a != null && b != null) {
+            if (a != b && (!a.getClassName().equals(b.getClassName()) || a.getOmittedFrames() != b.getOmittedFrames()
+                || a.getCommonFrames() != b.getCommonFrames() || !Arrays.equals(a.getStackTrace(), b.getStackTrace()))) {
+                return false;
+            }
+            a = a.getCause();
+            b = b.getCause();
+        }
+        return a == null && b == null;
+    }
+
+    private Entry get(long fingerprint) {
+        synchronized (entries) {
+            return entries.get(fingerprint);
+        }
+    }
+
+    /**
+     * 替换条目；期间其他线程已替换过时以后写入者为准
+     */
+    private void put(long fingerprint, Entry entry) {
+        if (entry.size() > maxChars) {
+            return;
+        }
+        synchronized (entries) {
+            Entry replaced = entries.put(fingerprint, entry);
+            chars += entry.size() - (replaced == null ? 0 : replaced.size());
+            Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || chars > maxChars) && iterator.hasNext()) {
+                Map.Entry<Long, Entry> eldest = iterator.next();
+                if (eldest.getValue() == entry) {
+                    continue;
+                }
+                chars -= eldest.getValue().size();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long getChars() {
+        synchronized (entries) {
+            return chars;
+        }
+    }
+
+    /**
+     * 缓存条目，不可变，更新时整体替换
+     */
+    private static final class Entry {
+        /**
+         * 渲染栈帧时的异常快照，用于命中时比对；快照不持有异常对象，常驻缓存的代价很小
+         */
+        private final ThrowableSnapshot snapshot;
+        /**
+         * 各层栈帧的HTML片段，与cause链逐层对应
+         */
+        private final String[] frames;
+        private final String extra;
+        private final String extraHtml;
+        private final long size;
+
+        private Entry(ThrowableSnapshot snapshot, String[] frames, String extra, String extraHtml) {
+            this.snapshot = snapshot;
+            this.frames = frames;
+            this.extra = extra;
+            this.extraHtml = extraHtml;
+            long total = extraHtml == null ? 0 : extra.length() + extraHtml.length();
+            if (frames != null) {
+                for (String fragment : frames) {
+                    total += fragment.length();
+                }
+            }
+            this.size = total;
+        }
+
+        private long size() {
+            return size;
+        }
+    }
+}
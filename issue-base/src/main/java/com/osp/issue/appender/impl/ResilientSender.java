@@ -0,0 +1,241 @@
+package com.osp.issue.appender.impl;
+
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.util.CircuitBreaker;
+import com.osp.issue.util.ExchangeClient;
+import com.osp.issue.util.PluginConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 邮件发送的容错包装：熔断器 + 带抖动的指数退避重试 + 有界死信缓冲。
+ * 重试耗尽或熔断期间的邮件进入死信缓冲，熔断器恢复后由后台线程按顺序补发，缓冲满时淘汰最旧的邮件
+ *
+ * @author huangqiaowei
+ * @since 2019-07-24 10:40
+ **/
+@Slf4j
+final class ResilientSender {
+
+    private static final int DEFAULT_BREAKER_FAILURES = 5;
+    private static final long DEFAULT_BREAKER_OPEN_TIME = 30000;
+    private static final int DEFAULT_RETRIES = 2;
+    private static final long DEFAULT_RETRY_BACKOFF = 500;
+    private static final long DEFAULT_RETRY_MAX_BACKOFF = 5000;
+    private static final int DEFAULT_DEAD_LETTER_SIZE = 100;
+
+    private final String name;
+    private final ExchangeClient client;
+    private final CircuitBreaker breaker;
+    private final int retries;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int deadLetterSize;
+    private final Deque<DeadLetter> deadLetters;
+    private final ScheduledExecutorService redeliverer;
+    private final LongAdder retried;
+    private final LongAdder shortCircuited;
+    private final LongAdder deadLettered;
+    private final LongAdder deadLetterDropped;
+    private final LongAdder redelivered;
+
+    ResilientSender(ExchangeClient client, PluginConfig config) {
+        this.name = config.getName();
+        this.client = client;
+        long openMillis = config.getLong("breakerOpenTime", DEFAULT_BREAKER_OPEN_TIME);
+        this.breaker = new CircuitBreaker(config.getInt("breakerFailures", DEFAULT_BREAKER_FAILURES), openMillis);
+        this.retries = Math.max(0, config.getInt("retries", DEFAULT_RETRIES));
+        this.backoffMillis = Math.max(1, config.getLong("retryBackoff", DEFAULT_RETRY_BACKOFF));
+        this.maxBackoffMillis = Math.max(backoffMillis, config.getLong("retryMaxBackoff", DEFAULT_RETRY_MAX_BACKOFF));
+        this.deadLetterSize = Math.max(0, config.getInt("deadLetterSize", DEFAULT_DEAD_LETTER_SIZE));
+        this.deadLetters = new ArrayDeque<>(Math.min(deadLetterSize, 16));
+        AlarmMetrics metrics = AlarmMetrics.getInstance();
+        String prefix = "appender." + name + ".";
+        this.retried = metrics.counter(prefix + "retried");
+        this.shortCircuited = metrics.counter(prefix + "shortCircuited");
+        this.deadLettered = metrics.counter(prefix + "deadLettered");
+        this.deadLetterDropped = metrics.counter(prefix + "deadLetterDropped");
+        this.redelivered = metrics.counter(prefix + "redelivered");
+        metrics.gauge(prefix + "deadLetters", this::getDeadLetterCount);
+        metrics.gauge(prefix + "circuitOpen", () -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        this.redeliverer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ALARM-REDELIVER-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 没有新报警时也能在熔断恢复后补发
+        long period = Math.max(1000, openMillis);
+        redeliverer.scheduleWithFixedDelay(this::redeliver, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 发送邮件：熔断打开时直接进入死信，否则按退避重试，重试耗尽后进入死信
+     *
+     * @param subject 标题
+     * @param content 正文
+     * @return 是否已发送，false表示已转入死信缓冲（或缓冲已满被丢弃）
+     */
+    boolean send(String subject, String content) {
+        for (int attempt = 0; ; attempt++) {
+            if (!breaker.allowRequest()) {
+                shortCircuited.increment();
+                break;
+            }
+            if (client.sendExchange(subject, content)) {
+                if (breaker.onSuccess()) {
+                    log.info("邮件服务已恢复，熔断器关闭，补发死信{}封", getDeadLetterCount());
+                    redeliverLater();
+                }
+                return true;
+            }
+            if (breaker.onFailure()) {
+                log.warn("邮件连续发送失败，熔断器打开，后续邮件直接进入死信缓冲");
+            }
+            if (attempt >= retries || !backoff(attempt)) {
+                break;
+            }
+            retried.increment();
+        }
+        park(new DeadLetter(subject, content));
+        return false;
+    }
+
+    private void redeliverLater() {
+        try {
+            redeliverer.execute(this::redeliver);
+        } catch (RejectedExecutionException e) {
+            // 已关闭，剩余死信由close()处理
+        }
+    }
+
+    /**
+     * 带抖动的指数退避：在 [base*2^n/2, base*2^n] 间随机等待，上限为retryMaxBackoff，
+     * 避免多个工作线程在服务恢复瞬间同时重试
+     *
+     * @param attempt 已尝试次数减一
+     * @return 是否正常等待完成，被中断时返回false
+     */
+    private boolean backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt, 20));
+        long sleep = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        try {
+            TimeUnit.MILLISECONDS.sleep(sleep);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void park(DeadLetter deadLetter) {
+        if (deadLetterSize == 0) {
+            deadLetterDropped.increment();
+            return;
+        }
+        synchronized (deadLetters) {
+            if (deadLetters.size() >= deadLetterSize) {
+                deadLetters.pollFirst();
+                deadLetterDropped.increment();
+            }
+            deadLetters.addLast(deadLetter);
+        }
+        deadLettered.increment();
+    }
+
+    private void redeliver() {
+        redeliver(false, 0);
+    }
+
+    /**
+     * 补发死信，由补发线程（及关闭时的调用线程）串行执行；熔断器不放行或任一封失败即停止，等待下个周期
+     *
+     * @param bounded  是否有截止时间
+     * @param deadline 截止时间，System.nanoTime()，到期后不再开始新的发送
+     */
+    private void redeliver(boolean bounded, long deadline) {
+        try {
+            DeadLetter deadLetter;
+            while ((deadLetter = peek()) != null && (!bounded || System.nanoTime() - deadline < 0)
+                && breaker.allowRequest()) {
+                if (!client.sendExchange(deadLetter.subject, deadLetter.content + deadLetter.note())) {
+                    breaker.onFailure();
+                    return;
+                }
+                breaker.onSuccess();
+                synchronized (deadLetters) {
+                    // 期间可能已被淘汰，按引用移除
+                    deadLetters.remove(deadLetter);
+                }
+                redelivered.increment();
+            }
+        } catch (RuntimeException e) {
+            log.error("补发死信失败", e);
+        }
+    }
+
+    private DeadLetter peek() {
+        synchronized (deadLetters) {
+            return deadLetters.peekFirst();
+        }
+    }
+
+    int getDeadLetterCount() {
+        synchronized (deadLetters) {
+            return deadLetters.size();
+        }
+    }
+
+    /**
+     * 停止补发线程，熔断器关闭时在截止时间前补发一轮，仍未发出的死信记录日志后丢弃。
+     * 正在进行的一次发送无法打断，最多超出截止时间一个EWS请求超时
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     */
+    void close(long deadline) {
+        redeliverer.shutdownNow();
+        try {
+            redeliverer.awaitTermination(Math.max(0, Math.min(TimeUnit.SECONDS.toNanos(1), deadline - System.nanoTime())),
+                TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (breaker.getState() == CircuitBreaker.State.CLOSED) {
+            redeliver(true, deadline);
+        }
+        int rest = getDeadLetterCount();
+        if (rest > 0) {
+            deadLetterDropped.add(rest);
+            log.warn("appender[{}]关闭时仍有{}封死信未发出，已丢弃", name, rest);
+        }
+    }
+
+    /**
+     * 死信：保存渲染好的邮件，补发时不再重新渲染
+     */
+    private static final class DeadLetter {
+        private final String subject;
+        private final String content;
+        private final LocalDateTime failedAt = LocalDateTime.now();
+
+        private DeadLetter(String subject, String content) {
+            this.subject = subject;
+            this.content = content;
+        }
+
+        /**
+         * 补发时附在正文末尾，说明原始发送时间
+         */
+        private String note() {
+            return "<p style=\"color: #999\">该邮件因邮件服务不可用延迟补发，原发送时间：" + failedAt.withNano(0) + "</p>";
+        }
+    }
+}
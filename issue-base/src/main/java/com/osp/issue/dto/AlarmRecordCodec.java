@@ -0,0 +1,199 @@
+package com.osp.issue.dto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 报警的紧凑二进制编码，用于落盘日志：字符串为长度+UTF-8字节（-1表示null），时间为UTC秒+纳秒，
+ * 异常快照按cause链递归编码。原始异常对象不编码；延迟生成的额外信息可选择在编码时生成，
+ * 不生成时记录为未采集标记，避免在业务线程上序列化参数
+ *
+ * @author huangqiaowei
+ * @since 2019-07-10 14:05
+ **/
+public final class AlarmRecordCodec {
+
+    /**
+     * 2：异常快照增加折叠的公共栈帧数；3：增加报警级别。仍可读取旧版本的记录
+     */
+    private static final byte VERSION = 3;
+    private static final byte VERSION_WITHOUT_COMMON_FRAMES = 1;
+    private static final byte VERSION_WITHOUT_SEVERITY = 2;
+    private static final byte NULL_SEVERITY = -1;
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    private static final String EXTRA_NOT_CAPTURED = "（额外信息为延迟生成，溢出落盘时未采集）";
+
+    private AlarmRecordCodec() {
+    }
+
+    /**
+     * 编码，延迟生成的额外信息在编码时生成
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 字节
+     */
+    public static byte[] encode(BaseAlarmDto baseAlarmDto) {
+        return encode(baseAlarmDto, true);
+    }
+
+    /**
+     * 编码
+     *
+     * @param baseAlarmDto 报警信息
+     * @param resolveExtra 是否生成延迟的额外信息，为false时只编码已生成的额外信息
+     * @return 字节
+     */
+    public static byte[] encode(BaseAlarmDto baseAlarmDto, boolean resolveExtra) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(baseAlarmDto.getFingerprint());
+            out.writeLong(baseAlarmDto.getCount());
+            writeTime(out, baseAlarmDto.getExecutionTime());
+            writeTime(out, baseAlarmDto.getFirstTime());
+            writeTime(out, baseAlarmDto.getLastTime());
+            writeString(out, baseAlarmDto.getThreadName());
+            writeString(out, baseAlarmDto.getPlace());
+            writeString(out, baseAlarmDto.getErrorMessage());
+            writeString(out, baseAlarmDto.getOperator());
+            writeString(out, resolveExtra || !baseAlarmDto.isExtraDeferred()
+                ? baseAlarmDto.getExtra() : EXTRA_NOT_CAPTURED);
+            writeString(out, baseAlarmDto.getIp());
+            out.writeByte(baseAlarmDto.getSeverity() == null ? NULL_SEVERITY : baseAlarmDto.getSeverity().ordinal());
+            writeSnapshot(out, baseAlarmDto.getException());
+        } catch (IOException e) {
+            // 内存流不会抛出IO异常
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 解码
+     *
+     * @param buffer 从记录起始位置开始的缓冲区，读取后位置移到记录末尾
+     * @return 报警信息
+     * @throws IllegalArgumentException 版本不支持或内容损坏
+     */
+    public static BaseAlarmDto decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version < VERSION_WITHOUT_COMMON_FRAMES || version > VERSION) {
+            throw new IllegalArgumentException("不支持的报警记录版本：" + version);
+        }
+        long fingerprint = buffer.getLong();
+        long count = buffer.getLong();
+        LocalDateTime executionTime = readTime(buffer);
+        LocalDateTime firstTime = readTime(buffer);
+        LocalDateTime lastTime = readTime(buffer);
+        BaseAlarmDto baseAlarmDto = new BaseAlarmDto(readString(buffer));
+        baseAlarmDto.setFingerprint(fingerprint);
+        baseAlarmDto.setCount(count);
+        baseAlarmDto.setExecutionTime(executionTime);
+        baseAlarmDto.setFirstTime(firstTime);
+        baseAlarmDto.setLastTime(lastTime);
+        baseAlarmDto.setPlace(readString(buffer));
+        baseAlarmDto.setErrorMessage(readString(buffer));
+        baseAlarmDto.setOperator(readString(buffer));
+        baseAlarmDto.setExtra(readString(buffer));
+        baseAlarmDto.setIp(readString(buffer));
+        if (version > VERSION_WITHOUT_SEVERITY) {
+            baseAlarmDto.setSeverity(readSeverity(buffer));
+        }
+        baseAlarmDto.setException(readSnapshot(buffer, version));
+        return baseAlarmDto;
+    }
+
+    private static Severity readSeverity(ByteBuffer buffer) {
+        byte ordinal = buffer.get();
+        if (ordinal == NULL_SEVERITY) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= Severity.values().length) {
+            throw new IllegalArgumentException("报警记录已损坏，级别无效：" + ordinal);
+        }
+        return Severity.values()[ordinal];
+    }
+
+    private static void writeSnapshot(DataOutputStream out, ThrowableSnapshot snapshot) throws IOException {
+        for (ThrowableSnapshot current = snapshot; current != null; current = current.getCause()) {
+            out.writeBoolean(true);
+            writeString(out, current.getClassName());
+            writeString(out, current.getMessage());
+            out.writeInt(current.getOmittedFrames());
+            out.writeInt(current.getCommonFrames());
+            StackTraceElement[] frames = current.getStackTrace();
+            out.writeInt(frames.length);
+            for (StackTraceElement frame : frames) {
+                writeString(out, frame.getClassName());
+                writeString(out, frame.getMethodName());
+                writeString(out, frame.getFileName());
+                out.writeInt(frame.getLineNumber());
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    private static ThrowableSnapshot readSnapshot(ByteBuffer buffer, byte version) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        String className = readString(buffer);
+        String message = readString(buffer);
+        int omittedFrames = buffer.getInt();
+        int commonFrames = version == VERSION_WITHOUT_COMMON_FRAMES ? 0 : buffer.getInt();
+        StackTraceElement[] frames = new StackTraceElement[checkLength(buffer.getInt(), buffer)];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new StackTraceElement(readString(buffer), readString(buffer), readString(buffer), buffer.getInt());
+        }
+        return ThrowableSnapshot.restore(className, message, frames, omittedFrames, commonFrames,
+            readSnapshot(buffer, version));
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(NULL_TIME);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        return seconds == NULL_TIME ? null : LocalDateTime.ofEpochSecond(seconds, buffer.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        checkLength(length, buffer);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkLength(int length, ByteBuffer buffer) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("报警记录已损坏");
+        }
+        return length;
+    }
+}
@@ -1,10 +1,13 @@
 package com.osp.issue.dto;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.time.LocalDateTime;
+import java.util.function.Supplier;
 
 /**
  * 基础邮件通知类
@@ -13,9 +16,22 @@ import java.time.LocalDateTime;
  * @since 2019-05-28 17:33
  **/
 @Data
+@ToString(exclude = "extraSupplier", doNotUseGetters = true)
+@EqualsAndHashCode(exclude = "extraSupplier", doNotUseGetters = true)
 public class BaseAlarmDto {
 
     private static final String LOCALMACHINEIP;
+    /**
+     * 分离时尚未生成的额外信息以此代替，邮件中可见
+     */
+    private static final String EXTRA_DETACHED = "（聚合报警不含延迟生成的额外信息（如RPC参数），请查看窗口内首条报警）";
+
+    /**
+     * 异常快照参数，由AlarmManage按配置调整
+     */
+    private static volatile int maxStackDepth = 64;
+    private static volatile int maxCauses = 8;
+    private static volatile boolean keepThrowable = false;
 
     static {
         InetAddress ia = null;
@@ -37,7 +53,7 @@ public class BaseAlarmDto {
     /**
      * 线程名
      */
-    private final String threadName = Thread.currentThread().getName();
+    private final String threadName;
 
     /**
      * 发生时间
@@ -60,37 +76,206 @@ public class BaseAlarmDto {
     private String operator;
 
     /**
-     * 错误堆栈
+     * 原始异常，仅在配置keepThrowable或显式调用setCause时保留
      */
     private Throwable cause;
 
+    /**
+     * 异常快照：类名、消息、限深栈帧与cause链
+     */
+    private ThrowableSnapshot exception;
+
     /**
      * 额外信息
      */
     private String extra;
 
+    /**
+     * 延迟生成的额外信息，如RPC参数快照，首次读取extra时在分发线程上生成；
+     * toString、equals与hashCode直接读取字段，不会触发生成
+     */
+    private volatile Supplier<String> extraSupplier;
+
     private String ip = LOCALMACHINEIP;
 
+    /**
+     * 指纹：异常类型 + 应用栈帧 + 地点
+     */
+    private long fingerprint;
+
+    /**
+     * 聚合窗口内的发生次数
+     */
+    private long count = 1;
+
+    /**
+     * 聚合窗口内首次发生时间
+     */
+    private LocalDateTime firstTime;
+
+    /**
+     * 聚合窗口内最后发生时间
+     */
+    private LocalDateTime lastTime;
+
+    /**
+     * 此前被限流抑制的报警数，由下一条放行的报警携带
+     */
+    private long suppressed;
+
+    /**
+     * 首次被限流抑制的时间
+     */
+    private LocalDateTime suppressedSince;
+
+    /**
+     * 报警级别，为null时由AlarmManage按级别规则确定
+     */
+    private Severity severity;
+
     public BaseAlarmDto() {
+        this.threadName = Thread.currentThread().getName();
+    }
+
+    /**
+     * 从落盘记录恢复时保留原线程名
+     *
+     * @param threadName 线程名
+     */
+    BaseAlarmDto(String threadName) {
+        this.threadName = threadName;
     }
 
     public BaseAlarmDto(Throwable throwable) {
-        this.cause = throwable;
-        this.errorMessage = this.cause.getMessage();
+        this();
+        capture(throwable);
     }
 
     public BaseAlarmDto(Throwable throwable, String operator) {
-        this.cause = throwable;
-        this.errorMessage = this.cause.getMessage();
+        this();
+        capture(throwable);
         this.operator = operator;
     }
 
     public BaseAlarmDto(Throwable throwable, String operator, String extra, String place) {
-        this.cause = throwable;
+        this();
+        capture(throwable);
         this.operator = operator;
-        this.errorMessage = this.cause.getMessage();
         this.extra = extra;
         this.place = place;
     }
 
+    /**
+     * 提取异常快照，默认不保留异常对象，避免排队期间占用其整个对象图
+     *
+     * @param throwable 异常
+     */
+    private void capture(Throwable throwable) {
+        this.exception = ThrowableSnapshot.of(throwable, maxStackDepth, maxCauses);
+        this.errorMessage = throwable.getMessage();
+        if (keepThrowable) {
+            this.cause = throwable;
+        }
+    }
+
+    /**
+     * 额外信息，存在延迟生成的内容时在首次读取时生成
+     *
+     * @return 额外信息
+     */
+    public String getExtra() {
+        if (extraSupplier != null) {
+            resolveExtra();
+        }
+        return extra;
+    }
+
+    /**
+     * 是否有尚未生成的延迟额外信息，不触发生成
+     *
+     * @return 是否有
+     */
+    boolean isExtraDeferred() {
+        return extraSupplier != null;
+    }
+
+    private synchronized void resolveExtra() {
+        Supplier<String> supplier = extraSupplier;
+        if (supplier == null) {
+            return;
+        }
+        try {
+            extra = supplier.get();
+        } catch (RuntimeException e) {
+            extra = "额外信息生成失败：" + e;
+        }
+        extraSupplier = null;
+    }
+
+    /**
+     * 显式设置异常：同时保留异常对象与快照
+     *
+     * @param cause 异常
+     */
+    public void setCause(Throwable cause) {
+        this.cause = cause;
+        this.exception = ThrowableSnapshot.of(cause, maxStackDepth, maxCauses);
+    }
+
+    /**
+     * 调整异常快照参数
+     *
+     * @param maxStackDepth 每层最多保留的栈帧数
+     * @param maxCauses     最多保留的cause层数
+     * @param keepThrowable 是否保留原始异常对象
+     */
+    public static void configureCapture(int maxStackDepth, int maxCauses, boolean keepThrowable) {
+        BaseAlarmDto.maxStackDepth = maxStackDepth;
+        BaseAlarmDto.maxCauses = maxCauses;
+        BaseAlarmDto.keepThrowable = keepThrowable;
+    }
+
+    private BaseAlarmDto(BaseAlarmDto source, boolean resolveExtra) {
+        this.threadName = source.threadName;
+        this.executionTime = source.executionTime;
+        this.place = source.place;
+        this.errorMessage = source.errorMessage;
+        this.operator = source.operator;
+        this.cause = source.cause;
+        this.exception = source.exception;
+        if (resolveExtra) {
+            this.extra = source.getExtra();
+        } else {
+            this.extra = source.extraSupplier != null ? EXTRA_DETACHED : source.extra;
+        }
+        this.ip = source.ip;
+        this.fingerprint = source.fingerprint;
+        this.count = source.count;
+        this.firstTime = source.firstTime;
+        this.lastTime = source.lastTime;
+        this.suppressed = source.suppressed;
+        this.suppressedSince = source.suppressedSince;
+        this.severity = source.severity;
+    }
+
+    /**
+     * 浅拷贝，用于生成聚合报警等派生报警
+     *
+     * @return 新的报警信息
+     */
+    public BaseAlarmDto copy() {
+        return new BaseAlarmDto(this, true);
+    }
+
+    /**
+     * 浅拷贝，不生成也不持有延迟的额外信息，用于去重窗口等需要长期持有报警的场景，
+     * 避免在业务线程上序列化，也避免整个窗口期间持有RPC参数的对象图。
+     * 已生成的额外信息保留，尚未生成的以说明文字代替
+     *
+     * @return 新的报警信息
+     */
+    public BaseAlarmDto detach() {
+        return new BaseAlarmDto(this, false);
+    }
+
 }
@@ -0,0 +1,46 @@
+package com.osp.issue.dto;
+
+/**
+ * 报警级别，HIGH及以上走优先通道：先于低级别报警出队，且不会因低级别报警溢出被淘汰
+ *
+ * @author huangqiaowei
+ * @since 2019-07-31 10:20
+ **/
+public enum Severity {
+    /**
+     * 低价值报警，如客户端断开
+     */
+    LOW,
+    /**
+     * 默认级别
+     */
+    NORMAL,
+    /**
+     * 需要及时处理
+     */
+    HIGH,
+    /**
+     * 严重故障，如数据库不可达
+     */
+    CRITICAL;
+
+    /**
+     * 是否走优先通道
+     *
+     * @return HIGH及以上为true
+     */
+    public boolean isPriority() {
+        return this.compareTo(HIGH) >= 0;
+    }
+
+    /**
+     * 按名称解析，忽略大小写
+     *
+     * @param name 名称
+     * @return 级别
+     * @throws IllegalArgumentException 名称无效
+     */
+    public static Severity of(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,143 @@
+package com.osp.issue.dto;
+
+import java.util.Arrays;
+
+/**
+ * 异常快照：只保留类名、消息与限深的栈帧及cause链，不持有异常对象本身及其引用的业务对象。
+ * cause与外层异常栈底相同的栈帧在提取时即折叠，只记录数量（即printStackTrace中的“... n more”）
+ *
+ * @author huangqiaowei
+ * @since 2019-06-24 11:18
+ **/
+public final class ThrowableSnapshot {
+
+    private final String className;
+    private final String message;
+    private final StackTraceElement[] stackTrace;
+    private final int omittedFrames;
+    private final int commonFrames;
+    private final ThrowableSnapshot cause;
+
+    private ThrowableSnapshot(String className, String message, StackTraceElement[] stackTrace, int omittedFrames,
+                              int commonFrames, ThrowableSnapshot cause) {
+        this.className = className;
+        this.message = message;
+        this.stackTrace = stackTrace;
+        this.omittedFrames = omittedFrames;
+        this.commonFrames = commonFrames;
+        this.cause = cause;
+    }
+
+    /**
+     * 提取快照
+     *
+     * @param throwable 异常
+     * @param maxDepth  每层最多保留的栈帧数
+     * @param maxCauses 最多保留的cause层数，同时防止cause循环引用
+     * @return 快照，异常为null时返回null
+     */
+    public static ThrowableSnapshot of(Throwable throwable, int maxDepth, int maxCauses) {
+        return of(throwable, null, maxDepth, maxCauses);
+    }
+
+    /**
+     * @param enclosing 外层异常的完整栈帧，最外层为null
+     */
+    private static ThrowableSnapshot of(Throwable throwable, StackTraceElement[] enclosing, int maxDepth, int maxCauses) {
+        if (throwable == null) {
+            return null;
+        }
+        StackTraceElement[] frames = throwable.getStackTrace();
+        int common = enclosing == null ? 0 : commonFrames(frames, enclosing);
+        int unique = frames.length - common;
+        int kept = Math.min(unique, maxDepth);
+        Throwable next = throwable.getCause();
+        ThrowableSnapshot cause = maxCauses > 0 && next != null && next != throwable
+            ? of(next, frames, maxDepth, maxCauses - 1) : null;
+        return new ThrowableSnapshot(throwable.getClass().getName(), throwable.getLocalizedMessage(),
+            kept == frames.length ? frames : Arrays.copyOf(frames, kept), unique - kept, common, cause);
+    }
+
+    /**
+     * 与外层异常自栈底起相同的栈帧数，算法同Throwable.printEnclosedStackTrace
+     */
+    private static int commonFrames(StackTraceElement[] frames, StackTraceElement[] enclosing) {
+        int m = frames.length - 1;
+        int n = enclosing.length - 1;
+        while (m >= 0 && n >= 0 && frames[m].equals(enclosing[n])) {
+            m--;
+            n--;
+        }
+        return frames.length - 1 - m;
+    }
+
+    /**
+     * 从落盘记录恢复快照
+     *
+     * @param className     异常类全限定名
+     * @param message       消息
+     * @param stackTrace    栈帧
+     * @param omittedFrames 丢弃的栈帧数
+     * @param commonFrames  与外层异常相同而折叠的栈帧数
+     * @param cause         cause快照
+     * @return 快照
+     */
+    static ThrowableSnapshot restore(String className, String message, StackTraceElement[] stackTrace,
+                                     int omittedFrames, int commonFrames, ThrowableSnapshot cause) {
+        return new ThrowableSnapshot(className, message, stackTrace, omittedFrames, commonFrames, cause);
+    }
+
+    /**
+     * 异常类全限定名
+     *
+     * @return 类名
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * 限深后的栈帧，调用方不得修改
+     *
+     * @return 栈帧
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    /**
+     * 超出深度限制被丢弃的栈帧数
+     *
+     * @return 丢弃数
+     */
+    public int getOmittedFrames() {
+        return omittedFrames;
+    }
+
+    /**
+     * 与外层异常栈底相同而折叠的栈帧数，最外层为0
+     *
+     * @return 折叠数
+     */
+    public int getCommonFrames() {
+        return commonFrames;
+    }
+
+    public ThrowableSnapshot getCause() {
+        return cause;
+    }
+
+    /**
+     * 与Throwable.toString()格式一致
+     *
+     * @return 类名: 消息
+     */
+    @Override
+    public String toString() {
+        return message == null ? className : className + ": " + message;
+    }
+}
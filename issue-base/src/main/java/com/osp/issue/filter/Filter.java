@@ -21,6 +21,16 @@ public interface Filter {
      */
     Boolean filter(BaseAlarmDto baseAlarmDto);
 
+    /**
+     * 是否作为前置过滤器在调用notice()的业务线程上执行，命中的报警不会进入队列。
+     * 返回true的实现必须线程安全、不阻塞、不分配内存
+     *
+     * @return 默认false，在分发线程上执行
+     */
+    default boolean isPreFilter() {
+        return false;
+    }
+
     /**
      * 根据配置文件初始化Filter
      *
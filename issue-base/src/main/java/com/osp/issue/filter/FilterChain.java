@@ -0,0 +1,51 @@
+package com.osp.issue.filter;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.metrics.AlarmMetrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 过滤链：按配置顺序执行，任一过滤器命中即短路返回
+ *
+ * @author huangqiaowei
+ * @since 2019-06-20 16:10
+ **/
+public final class FilterChain {
+
+    private final Filter[] filters;
+    /**
+     * 与filters一一对应的拦截计数
+     */
+    private final LongAdder[] suppressed;
+
+    public FilterChain(List<Filter> filters) {
+        this.filters = filters.toArray(new Filter[0]);
+        this.suppressed = new LongAdder[this.filters.length];
+        for (int i = 0; i < this.filters.length; i++) {
+            suppressed[i] = AlarmMetrics.getInstance()
+                .counter("filter." + this.filters[i].getClass().getSimpleName() + ".suppressed");
+        }
+    }
+
+    /**
+     * 执行过滤
+     *
+     * @param baseAlarmDto 报警内容
+     * @return true 表示被过滤，不再发送
+     */
+    public boolean filter(BaseAlarmDto baseAlarmDto) {
+        for (int i = 0; i < filters.length; i++) {
+            if (Boolean.TRUE.equals(filters[i].filter(baseAlarmDto))) {
+                suppressed[i].increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return filters.length == 0;
+    }
+}
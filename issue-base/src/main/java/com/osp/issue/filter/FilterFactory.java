@@ -0,0 +1,29 @@
+package com.osp.issue.filter;
+
+import com.osp.issue.util.PluginConfig;
+
+/**
+ * 过滤器工厂：通过ServiceLoader注册（META-INF/services/com.osp.issue.filter.FilterFactory），
+ * 按名称匹配alarm.yml中filters下的key，无需反射创建与装配
+ *
+ * @author huangqiaowei
+ * @since 2019-07-22 10:42
+ **/
+public interface FilterFactory {
+
+    /**
+     * 名称，即alarm.yml中filters下的key
+     *
+     * @return 名称
+     */
+    String getName();
+
+    /**
+     * 创建并初始化过滤器
+     *
+     * @param config 配置块
+     * @return 过滤器
+     * @throws IllegalArgumentException 配置有误
+     */
+    Filter create(PluginConfig config);
+}
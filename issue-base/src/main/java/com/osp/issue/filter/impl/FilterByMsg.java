@@ -2,16 +2,19 @@ package com.osp.issue.filter.impl;
 
 import com.osp.issue.dto.BaseAlarmDto;
 import com.osp.issue.filter.Filter;
+import com.osp.issue.util.PatternUnion;
+import com.osp.issue.util.PluginConfig;
 import lombok.Data;
 
-import java.lang.reflect.Field;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Optional;
+import java.util.Set;
 
 /**
- * 根据错误消息过滤
+ * 根据错误消息过滤，同时支持按异常类型、地点、操作人过滤，任一规则命中即过滤。
+ * 初始化时预编译：异常类型与操作人为精确匹配，走哈希查找；错误消息与地点的多条正则各合并为一个预编译正则
+ * （含反向引用的规则单独编译）。Matcher按线程复用，匹配过程不分配内存，可配置preFilter在业务线程上前置过滤
  *
  * @author huangqiaowei
  * @since 2019-05-29 17:04
@@ -19,47 +22,105 @@ import java.util.Optional;
 @Data
 public class FilterByMsg implements Filter {
 
-    private static List<String> ruleStr;
+    private static final String SEPARATOR = "、";
+
     /**
-     * 过滤规则
+     * 过滤规则：错误消息正则，多条以、分隔
      */
     private String rule;
 
     /**
-     * 根据具体实现过滤报警邮件
+     * 异常类型全限定名，精确匹配，多个以、分隔
+     */
+    private String exceptions;
+
+    /**
+     * 地点正则，多条以、分隔
+     */
+    private String places;
+
+    /**
+     * 操作人，精确匹配，多个以、分隔
+     */
+    private String operators;
+
+    /**
+     * 是否在业务线程上前置过滤
+     */
+    private Boolean preFilter;
+
+    private Set<String> exceptionSet = Collections.emptySet();
+    private Set<String> operatorSet = Collections.emptySet();
+    private PatternUnion messagePatterns;
+    private PatternUnion placePatterns;
+
+    /**
+     * 根据具体实现过滤报警邮件，廉价的哈希查找在前，正则在后，命中即返回
      *
      * @param baseAlarmDto 报警内容
      * @return 过滤结果 满足true
      */
     @Override
     public Boolean filter(BaseAlarmDto baseAlarmDto) {
-        boolean temp = false;
-        for (String str : ruleStr) {
-            if (Optional.ofNullable(baseAlarmDto.getErrorMessage()).orElse("").matches(str)) {
-                temp = true;
-                break;
+        if (!exceptionSet.isEmpty() && baseAlarmDto.getException() != null
+            && exceptionSet.contains(baseAlarmDto.getException().getClassName())) {
+            return true;
+        }
+        if (!operatorSet.isEmpty() && baseAlarmDto.getOperator() != null
+            && operatorSet.contains(baseAlarmDto.getOperator())) {
+            return true;
+        }
+        if (messagePatterns != null) {
+            String errorMessage = baseAlarmDto.getErrorMessage();
+            if (messagePatterns.matches(errorMessage == null ? "" : errorMessage)) {
+                return true;
             }
         }
-        return temp;
+        return placePatterns != null && baseAlarmDto.getPlace() != null && placePatterns.matches(baseAlarmDto.getPlace());
+    }
+
+    @Override
+    public boolean isPreFilter() {
+        return Boolean.TRUE.equals(preFilter);
     }
 
     /**
-     * 根据配置文件初始化Filter
+     * 兼容按反射加载的方式
      *
      * @param map 属性
      */
     @Override
     public void init(LinkedHashMap map) {
-        // 读取配置文件，装配appender
-        Class<? extends FilterByMsg> filterByMsgClass = this.getClass();
-        Field[] fields = filterByMsgClass.getDeclaredFields();
-        for (Field field : fields) {
-            try {
-                field.set(this, map.get(field.getName()));
-            } catch (IllegalAccessException e) {
-                // ignore
+        configure(new PluginConfig(getClass().getSimpleName(), map));
+    }
+
+    /**
+     * 按配置装配并预编译规则
+     *
+     * @param config 配置块
+     */
+    public void configure(PluginConfig config) {
+        rule = config.getString("rule");
+        exceptions = config.getString("exceptions");
+        places = config.getString("places");
+        operators = config.getString("operators");
+        preFilter = config.getBoolean("preFilter", false);
+        exceptionSet = toSet(exceptions);
+        operatorSet = toSet(operators);
+        messagePatterns = PatternUnion.compile(rule, SEPARATOR);
+        placePatterns = PatternUnion.compile(places, SEPARATOR);
+    }
+
+    private static Set<String> toSet(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> set = new HashSet<>();
+        for (String item : value.split(SEPARATOR)) {
+            if (!item.trim().isEmpty()) {
+                set.add(item.trim());
             }
         }
-        ruleStr = Arrays.asList(Optional.ofNullable(rule).orElse("").split("、"));
+        return Collections.unmodifiableSet(set);
     }
 }
@@ -0,0 +1,26 @@
+package com.osp.issue.filter.impl;
+
+import com.osp.issue.filter.Filter;
+import com.osp.issue.filter.FilterFactory;
+import com.osp.issue.util.PluginConfig;
+
+/**
+ * 按错误消息过滤的工厂
+ *
+ * @author huangqiaowei
+ * @since 2019-07-22 11:05
+ **/
+public class FilterByMsgFactory implements FilterFactory {
+
+    @Override
+    public String getName() {
+        return "FilterByMsg";
+    }
+
+    @Override
+    public Filter create(PluginConfig config) {
+        FilterByMsg filter = new FilterByMsg();
+        filter.configure(config);
+        return filter;
+    }
+}
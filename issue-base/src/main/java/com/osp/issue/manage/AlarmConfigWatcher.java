@@ -0,0 +1,98 @@
+package com.osp.issue.manage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听外部配置文件变更：编辑器保存往往产生多次事件，最后一次事件后静默一段时间才回调
+ *
+ * @author huangqiaowei
+ * @since 2019-07-19 11:05
+ **/
+@Slf4j
+final class AlarmConfigWatcher {
+
+    private static final long QUIET_MILLIS = 500;
+
+    private final Path file;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    AlarmConfigWatcher(Path file, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        // 监听所在目录，文件被替换（先删后建、重命名覆盖）时也能感知
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "ALARM-CONFIG-WATCHER");
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> log.error("线程" + t.getName() + "已挂掉", e));
+    }
+
+    void start() {
+        thread.start();
+        log.info("开始监听报警配置文件：{}", file);
+    }
+
+    void stop() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("关闭配置文件监听失败", e);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!changed(watchService.take())) {
+                    continue;
+                }
+                // 合并短时间内的连续事件
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed(key);
+                }
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    log.error("重新加载报警配置失败", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // 停机
+        }
+    }
+
+    /**
+     * 消费事件并重置key
+     *
+     * @param key 事件
+     * @return 是否包含被监听的文件
+     */
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                || context instanceof Path && file.getFileName().equals(context)) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
@@ -0,0 +1,138 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 按指纹在时间窗口内合并重复报警：窗口内首次出现立即发送，其余只计数，窗口结束时输出一条带次数的聚合报警
+ *
+ * @author huangqiaowei
+ * @since 2019-06-12 11:05
+ **/
+class AlarmDeduplicator {
+
+    /**
+     * 窗口已关闭标记
+     */
+    private static final long CLOSED = -1;
+
+    private final long windowMillis;
+    private final int maxSize;
+    private final ConcurrentHashMap<Long, Window> windows;
+    private final AtomicInteger size = new AtomicInteger();
+
+    AlarmDeduplicator(long windowMillis, int maxSize) {
+        this.windowMillis = windowMillis;
+        this.maxSize = maxSize;
+        this.windows = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+    /**
+     * 生产者线程调用，O(1)
+     *
+     * @param baseAlarmDto 已计算指纹的报警
+     * @param now          当前时间毫秒
+     * @return true 需要入队发送；false 已合并到现有窗口
+     */
+    boolean accept(BaseAlarmDto baseAlarmDto, long now) {
+        Long key = baseAlarmDto.getFingerprint();
+        while (true) {
+            Window window = windows.get(key);
+            if (window == null) {
+                if (size.get() >= maxSize) {
+                    // 表已满，放行不跟踪，保证内存有界
+                    return true;
+                }
+                if (windows.putIfAbsent(key, new Window(baseAlarmDto, now)) == null) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                continue;
+            }
+            if (window.fold(now)) {
+                return false;
+            }
+            // 窗口刚被清理线程关闭，重新开窗；与清理线程只有一方移除成功，由成功者减计数
+            if (windows.remove(key, window)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 分发线程定期调用，关闭到期窗口并输出聚合报警
+     *
+     * @param now     当前时间毫秒
+     * @param emitter 聚合报警接收者
+     */
+    void sweep(long now, Consumer<BaseAlarmDto> emitter) {
+        Iterator<Map.Entry<Long, Window>> iterator = windows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Window> entry = iterator.next();
+            Window window = entry.getValue();
+            if (now - window.firstSeen < windowMillis) {
+                continue;
+            }
+            long hits = window.hits.getAndSet(CLOSED);
+            // 迭代器的remove按key删除，生产者可能已换上新窗口，只删除本窗口
+            if (windows.remove(entry.getKey(), window)) {
+                size.decrementAndGet();
+            }
+            if (hits > 1) {
+                emitter.accept(window.aggregate(hits));
+            }
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private static final class Window {
+
+        private final BaseAlarmDto first;
+        private final long firstSeen;
+        private final AtomicLong hits = new AtomicLong(1);
+        private volatile long lastSeen;
+
+        private Window(BaseAlarmDto first, long now) {
+            // 不持有延迟生成额外信息所引用的参数：聚合报警只带已生成的额外信息，RPC参数见窗口内首条报警
+            this.first = first.detach();
+            this.firstSeen = now;
+            this.lastSeen = now;
+        }
+
+        private boolean fold(long now) {
+            long current;
+            do {
+                current = hits.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+            } while (!hits.compareAndSet(current, current + 1));
+            lastSeen = now;
+            return true;
+        }
+
+        private BaseAlarmDto aggregate(long count) {
+            BaseAlarmDto aggregated = first.copy();
+            aggregated.setCount(count);
+            aggregated.setFirstTime(toLocalDateTime(firstSeen));
+            aggregated.setLastTime(toLocalDateTime(lastSeen));
+            return aggregated;
+        }
+
+        private static LocalDateTime toLocalDateTime(long millis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.AlarmRecordCodec;
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.metrics.AlarmMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 报警落盘日志：队满溢出与停机时未处理的报警追加写入内存映射的日志段，空闲时或下次启动后回放给分发线程。
+ * <p>
+ * 段文件：头部为魔数与已读位置，之后依次为 [长度][CRC32][报警编码] 记录，长度为0表示段内数据结束。
+ * 段大小与段数量有上限，超出数量上限时丢弃最旧的未回放段。已读位置在每条记录回放前写回段头，
+ * 进程崩溃时最多丢失正在回放的一条
+ *
+ * @author huangqiaowei
+ * @since 2019-07-10 14:40
+ **/
+@Slf4j
+final class AlarmJournal {
+
+    private static final int MAGIC = 0x414C4A31;
+    private static final int SEGMENT_HEADER = 8;
+    private static final int READ_OFFSET_POSITION = 4;
+    private static final int RECORD_HEADER = 8;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * 已写满、等待回放的段，按写入顺序
+     */
+    private final Deque<Path> sealed = new ConcurrentLinkedDeque<>();
+    private final LongAdder written = AlarmMetrics.getInstance().counter("journal.written");
+    private final LongAdder replayed = AlarmMetrics.getInstance().counter("journal.replayed");
+    private final LongAdder lost = AlarmMetrics.getInstance().counter("journal.lost");
+    /**
+     * 以下由writeLock保护
+     */
+    private long nextSequence;
+    private volatile Segment writing;
+    /**
+     * 仅分发线程修改
+     */
+    private volatile Segment reading;
+
+    AlarmJournal(Path directory, int segmentSize, int maxSegments) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(2, maxSegments);
+        // 上次运行遗留的段全部视为待回放
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(existing::add);
+        }
+        Collections.sort(existing);
+        for (Path path : existing) {
+            sealed.addLast(path);
+            nextSequence = Math.max(nextSequence, sequenceOf(path) + 1);
+        }
+        if (!existing.isEmpty()) {
+            log.info("报警日志中有{}个待回放的段，目录：{}", existing.size(), directory);
+        }
+        AlarmMetrics.getInstance().gauge("journal.segments",
+            () -> sealed.size() + (writing != null ? 1 : 0) + (reading != null ? 1 : 0));
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 写入报警，其他线程正在写入时立即放弃，不阻塞调用线程；
+     * 调用线程可能是业务线程，延迟生成的额外信息不在此生成
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 是否写入
+     */
+    boolean offer(BaseAlarmDto baseAlarmDto) {
+        return write(baseAlarmDto, false);
+    }
+
+    /**
+     * 写入报警，等待其他线程写完，用于停机，延迟生成的额外信息在写入时生成
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 是否写入
+     */
+    boolean append(BaseAlarmDto baseAlarmDto) {
+        return write(baseAlarmDto, true);
+    }
+
+    private boolean write(BaseAlarmDto baseAlarmDto, boolean wait) {
+        byte[] body;
+        try {
+            body = AlarmRecordCodec.encode(baseAlarmDto, wait);
+        } catch (RuntimeException e) {
+            log.warn("报警编码失败，无法写入日志", e);
+            lost.increment();
+            return false;
+        }
+        if (RECORD_HEADER + body.length > segmentSize - SEGMENT_HEADER) {
+            lost.increment();
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if (wait) {
+            writeLock.lock();
+        } else if (!writeLock.tryLock()) {
+            lost.increment();
+            return false;
+        }
+        try {
+            if (writing == null || !writing.hasRoom(RECORD_HEADER + body.length)) {
+                roll();
+            }
+            writing.write(body, (int) crc.getValue());
+            written.increment();
+            return true;
+        } catch (IOException e) {
+            log.warn("写入报警日志失败", e);
+            lost.increment();
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 封存当前段并新建段，超出段数量上限时丢弃最旧的待回放段，需持有writeLock
+     */
+    private void roll() throws IOException {
+        seal();
+        while (sealed.size() + 1 > maxSegments) {
+            Path oldest = sealed.pollFirst();
+            if (oldest == null) {
+                break;
+            }
+            log.warn("报警日志超出{}个段的保留上限，丢弃最旧的段：{}", maxSegments, oldest);
+            Files.deleteIfExists(oldest);
+        }
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, nextSequence++, SUFFIX));
+        writing = Segment.create(path, segmentSize);
+    }
+
+    private void seal() {
+        if (writing != null) {
+            writing.force();
+            sealed.addLast(writing.path);
+            writing = null;
+        }
+    }
+
+    /**
+     * 回放报警，分发线程调用
+     *
+     * @param max      本次最多回放的条数
+     * @param consumer 回放接收者
+     * @return 实际回放条数
+     */
+    int replay(int max, Consumer<BaseAlarmDto> consumer) {
+        int count = 0;
+        while (count < max) {
+            if (reading == null && (reading = nextReadable()) == null) {
+                break;
+            }
+            BaseAlarmDto baseAlarmDto = reading.next();
+            if (baseAlarmDto == null) {
+                // 段已回放完毕
+                delete(reading.path);
+                reading = null;
+                continue;
+            }
+            replayed.increment();
+            count++;
+            consumer.accept(baseAlarmDto);
+        }
+        return count;
+    }
+
+    /**
+     * 取最旧的待回放段；没有封存段时封存正在写入的段，使其可被回放
+     */
+    private Segment nextReadable() {
+        Path path = sealed.pollFirst();
+        if (path == null) {
+            writeLock.lock();
+            try {
+                if (writing != null && writing.hasRecords()) {
+                    seal();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            path = sealed.pollFirst();
+        }
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Segment.open(path);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("报警日志段无法读取，已丢弃：" + path, e);
+            delete(path);
+            return nextReadable();
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除报警日志段失败：" + path, e);
+        }
+    }
+
+    /**
+     * 是否有待回放的报警
+     *
+     * @return 是否有待回放的段
+     */
+    boolean isEmpty() {
+        Segment current = writing;
+        return reading == null && sealed.isEmpty() && (current == null || !current.hasRecords());
+    }
+
+    /**
+     * 刷盘，用于停机
+     */
+    void close() {
+        writeLock.lock();
+        try {
+            if (writing != null) {
+                writing.force();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 日志段：一个内存映射文件
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, int size) throws IOException {
+            Segment segment = new Segment(path, map(path, size, StandardOpenOption.CREATE_NEW));
+            segment.buffer.putInt(0, MAGIC);
+            segment.buffer.putInt(READ_OFFSET_POSITION, SEGMENT_HEADER);
+            segment.writePosition = SEGMENT_HEADER;
+            return segment;
+        }
+
+        static Segment open(Path path) throws IOException {
+            Segment segment = new Segment(path, map(path, Files.size(path)));
+            if (segment.buffer.capacity() < SEGMENT_HEADER || segment.buffer.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("不是报警日志段");
+            }
+            segment.readPosition = Math.max(SEGMENT_HEADER, segment.buffer.getInt(READ_OFFSET_POSITION));
+            return segment;
+        }
+
+        private static MappedByteBuffer map(Path path, long size, StandardOpenOption... options) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, withReadWrite(options))) {
+                // 映射在通道关闭后仍然有效
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private static Set<StandardOpenOption> withReadWrite(StandardOpenOption... options) {
+            Set<StandardOpenOption> set = EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Collections.addAll(set, options);
+            return set;
+        }
+
+        boolean hasRoom(int size) {
+            return writePosition + size <= buffer.capacity();
+        }
+
+        boolean hasRecords() {
+            return writePosition > SEGMENT_HEADER;
+        }
+
+        void write(byte[] body, int crc) {
+            ByteBuffer target = buffer.duplicate();
+            target.position(writePosition + RECORD_HEADER);
+            target.put(body);
+            buffer.putInt(writePosition + 4, crc);
+            // 长度最后写入，读到非0长度时记录内容已完整
+            buffer.putInt(writePosition, body.length);
+            writePosition += RECORD_HEADER + body.length;
+        }
+
+        /**
+         * 读取下一条记录，损坏的记录直接跳过，CRC不符时放弃本段剩余内容
+         *
+         * @return 报警信息，段内没有更多记录时为null
+         */
+        BaseAlarmDto next() {
+            while (readPosition + RECORD_HEADER <= buffer.capacity()) {
+                int length = buffer.getInt(readPosition);
+                if (length <= 0 || readPosition + RECORD_HEADER + length > buffer.capacity()) {
+                    return null;
+                }
+                byte[] body = new byte[length];
+                ByteBuffer source = buffer.duplicate();
+                source.position(readPosition + RECORD_HEADER);
+                source.get(body);
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                if ((int) crc.getValue() != buffer.getInt(readPosition + 4)) {
+                    log.warn("报警日志段{}在位置{}处校验失败，放弃剩余内容", path, readPosition);
+                    return null;
+                }
+                readPosition += RECORD_HEADER + length;
+                buffer.putInt(READ_OFFSET_POSITION, readPosition);
+                try {
+                    return AlarmRecordCodec.decode(ByteBuffer.wrap(body));
+                } catch (IllegalArgumentException | BufferUnderflowException e) {
+                    log.warn("报警日志记录无法解析，已跳过：" + path, e);
+                }
+            }
+            return null;
+        }
+
+        void force() {
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * appender的双通道有界队列：高级别报警进入优先通道，出队时总是先取优先通道；
+ * 两个通道容量独立，低级别报警积压或队满不影响高级别报警入队。与ArrayBlockingQueue一样以一把锁保护
+ *
+ * @author huangqiaowei
+ * @since 2019-07-31 14:10
+ **/
+final class AlarmLaneQueue {
+
+    private final ArrayDeque<BaseAlarmDto> priority;
+    private final ArrayDeque<BaseAlarmDto> normal;
+    private final int priorityCapacity;
+    private final int normalCapacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * @param normalCapacity   普通通道容量
+     * @param priorityCapacity 优先通道容量
+     */
+    AlarmLaneQueue(int normalCapacity, int priorityCapacity) {
+        this.normalCapacity = Math.max(1, normalCapacity);
+        this.priorityCapacity = Math.max(1, priorityCapacity);
+        this.normal = new ArrayDeque<>(Math.min(this.normalCapacity, 1024));
+        this.priority = new ArrayDeque<>(Math.min(this.priorityCapacity, 1024));
+    }
+
+    /**
+     * 是否走优先通道
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 级别为HIGH及以上时为true，未设置级别按普通处理
+     */
+    static boolean isPriority(BaseAlarmDto baseAlarmDto) {
+        return baseAlarmDto.getSeverity() != null && baseAlarmDto.getSeverity().isPriority();
+    }
+
+    /**
+     * 按级别进入对应通道，通道满时立即返回false
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 是否成功
+     */
+    boolean offer(BaseAlarmDto baseAlarmDto) {
+        boolean isPriority = isPriority(baseAlarmDto);
+        lock.lock();
+        try {
+            ArrayDeque<BaseAlarmDto> lane = isPriority ? priority : normal;
+            if (lane.size() >= (isPriority ? priorityCapacity : normalCapacity)) {
+                return false;
+            }
+            lane.addLast(baseAlarmDto);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 出队，优先通道在前，两个通道都为空时最多等待timeout
+     *
+     * @param timeout 等待时长
+     * @param unit    单位
+     * @return 报警信息，超时为null
+     * @throws InterruptedException 等待时被打断
+     */
+    BaseAlarmDto poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (priority.isEmpty() && normal.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return priority.isEmpty() ? normal.pollFirst() : priority.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出最多max条，优先通道在前
+     *
+     * @param collection 目标集合
+     * @param max        最多条数
+     * @return 取出条数
+     */
+    int drainTo(Collection<BaseAlarmDto> collection, int max) {
+        lock.lock();
+        try {
+            int count = 0;
+            BaseAlarmDto element;
+            while (count < max && (element = priority.isEmpty() ? normal.pollFirst() : priority.pollFirst()) != null) {
+                collection.add(element);
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return priority.size() + normal.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int prioritySize() {
+        lock.lock();
+        try {
+            return priority.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,22 +1,36 @@
 package com.osp.issue.manage;
 
-import com.google.common.collect.Lists;
 import com.osp.issue.appender.Appender;
+import com.osp.issue.appender.AppenderFactory;
 import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.dto.Severity;
 import com.osp.issue.filter.Filter;
+import com.osp.issue.filter.FilterChain;
+import com.osp.issue.filter.FilterFactory;
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.metrics.MetricsExporter;
 import com.osp.issue.util.AlarmConfiguration;
+import com.osp.issue.util.Fingerprints;
+import com.osp.issue.util.PluginConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.MapUtils;
 
 import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author huangqiaowei
@@ -28,30 +42,413 @@ public class AlarmManage {
 
     private static volatile AlarmManage alarmManage;
 
-    private final long WAIT_TIME = 100;
-    private final TimeUnit WAIT_TIME_TIME_UNIT = TimeUnit.MILLISECONDS;
-    private final BlockingQueue<BaseAlarmDto> queue = new ArrayBlockingQueue<>(1000);
-    private volatile boolean isRunning = true;
-    public static final List<Appender> APPENDERS = Lists.newArrayList();
-    public static final List<Filter> FILTERS = Lists.newArrayList();
+    private final long DROP_REPORT_INTERVAL = 10000;
+    private DispatcherShard[] shards;
+    private boolean routeByPlace;
+    private OverflowPolicy overflowPolicy;
+    private int sampleRate;
+    private final AlarmMetrics metrics = AlarmMetrics.getInstance();
+    private final LongAdder noticed = metrics.counter("alarm.noticed");
+    private final LongAdder deduplicated = metrics.counter("alarm.deduplicated");
+    private final LongAdder enqueued = metrics.counter("alarm.enqueued");
+    private final LongAdder filtered = metrics.counter("alarm.filtered");
+    private final LongAdder overflowed = metrics.counter("alarm.overflowed");
+    private final LongAdder dropped = metrics.counter("alarm.dropped");
+    private long reportedDropped;
+    private long lastDropReport;
+    private volatile boolean accepting = true;
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+    private long shutdownTimeout;
+    /**
+     * 当前流水线，热加载时整体替换，读取方每条报警只读一次；初始化完成前为空流水线
+     */
+    private volatile AlarmPipeline pipeline = new AlarmPipeline(new ArrayList<>(), new ArrayList<>());
+    private volatile AlarmConfiguration configuration;
+    private volatile AlarmConfigWatcher configWatcher;
+    private LatencyMonitor latencyMonitor;
+    private final LongAdder preFiltered = metrics.counter("alarm.preFiltered");
+    private volatile ScheduledExecutorService metricsExporter;
     private static final String DEFAULT_APPENDER_PATH = "com.osp.issue.appender.impl.";
     private static final String DEFAULT_FILTERS_PATH = "com.osp.issue.filter.impl.";
+    private static final String DEFAULT_EXPORTER_PATH = "com.osp.issue.metrics.";
     private static final String PATH = "path";
+    private static final long MAX_SWEEP_INTERVAL = 1000;
+    private static final int REPLAY_BATCH = 64;
+    /**
+     * 保证热加载替换流水线与停机读取流水线互斥，停机后不会再换上新流水线
+     */
+    private final Object pipelineLock = new Object();
+
+    private int fingerprintFrames;
+    /**
+     * 报警级别规则，热加载时随流水线替换
+     */
+    private volatile SeverityRules severityRules;
+    /**
+     * 按级别的报警数，下标为级别序号
+     */
+    private final LongAdder[] severityCounters = new LongAdder[Severity.values().length];
+    private AlarmDeduplicator deduplicator;
+    private LogarithmicSampler sampler;
+    private final LongAdder sampleSuppressed = metrics.counter("sampling.suppressed");
+    private final LongAdder sampleUntracked = metrics.counter("sampling.untracked");
+    private long sweepInterval;
+    private long lastSweep;
+    private volatile AlarmJournal journal;
+    private PluginRegistry plugins;
+    private Thread bootstrapThread;
 
-    // 读取配置文件，加载alar工程
+    /**
+     * 读取配置文件与全局设置，创建分片队列，均为廉价操作，在getInstance()中同步执行
+     */
     private void init() {
         AlarmConfiguration alarmConfiguration = new AlarmConfiguration();
+        configuration = alarmConfiguration;
+        initShards(alarmConfiguration);
+        overflowPolicy = overflowPolicy(alarmConfiguration);
+        sampleRate = Math.max(1, alarmConfiguration.getInt("queue.sampleRate", 10));
+        shutdownTimeout = alarmConfiguration.getLong("shutdown.timeout", 5000L);
+        BaseAlarmDto.configureCapture(alarmConfiguration.getInt("capture.maxDepth", 64),
+            alarmConfiguration.getInt("capture.maxCauses", 8), alarmConfiguration.getBoolean("capture.keepThrowable", false));
+        fingerprintFrames = alarmConfiguration.getInt("dedup.frames", 3);
+        try {
+            severityRules = severityRules(alarmConfiguration);
+        } catch (RuntimeException e) {
+            log.error("报警级别规则有误，全部按NORMAL处理，详情请阅读README.md文档", e);
+            severityRules = SeverityRules.of(null, Severity.NORMAL.name());
+        }
+        for (Severity severity : Severity.values()) {
+            severityCounters[severity.ordinal()] = metrics.counter("alarm.severity." + severity.name());
+        }
+        if (alarmConfiguration.getBoolean("dedup.enabled", true)) {
+            long window = alarmConfiguration.getLong("dedup.window", 60000L);
+            deduplicator = new AlarmDeduplicator(window, alarmConfiguration.getInt("dedup.maxSize", 1024));
+            sweepInterval = Math.min(Math.max(window / 4, 1), MAX_SWEEP_INTERVAL);
+        }
+        if (alarmConfiguration.getBoolean("sampling.enabled", false)) {
+            sampler = new LogarithmicSampler(alarmConfiguration.getInt("sampling.base", 10),
+                alarmConfiguration.getLong("sampling.period", 3600000L), alarmConfiguration.getInt("sampling.maxSize", 4096));
+        }
+        long slowCall = alarmConfiguration.getLong("latency.slowCall", 0);
+        long percentileThreshold = alarmConfiguration.getLong("latency.percentileThreshold", 0);
+        if (slowCall > 0 || percentileThreshold > 0) {
+            double percentile = alarmConfiguration.getDouble("latency.percentile", 99);
+            latencyMonitor = new LatencyMonitor(slowCall, percentile, percentileThreshold,
+                alarmConfiguration.getLong("latency.interval", 60000L), alarmConfiguration.getLong("latency.minSamples", 100));
+        }
+    }
+
+    /**
+     * 配置有误时丢弃新报警，不能因报警设置阻止服务暴露
+     */
+    private static OverflowPolicy overflowPolicy(AlarmConfiguration alarmConfiguration) {
+        try {
+            return OverflowPolicy.of(alarmConfiguration.getString("queue.overflow", OverflowPolicy.DROP_NEWEST.name()));
+        } catch (IllegalArgumentException e) {
+            log.error("队列溢出策略有误，使用DROP_NEWEST，详情请阅读README.md文档", e);
+            return OverflowPolicy.DROP_NEWEST;
+        }
+    }
+
+    /**
+     * 解析报警级别规则
+     *
+     * @param alarmConfiguration 配置
+     * @return 规则
+     * @throws IllegalArgumentException 级别名称或正则无效
+     */
+    private static SeverityRules severityRules(AlarmConfiguration alarmConfiguration) {
+        return SeverityRules.of(alarmConfiguration.getSetting("severity.rules"),
+            alarmConfiguration.getString("severity.default", Severity.NORMAL.name()));
+    }
+
+    /**
+     * 较重的初始化：发现插件、加载模版与创建邮件客户端、打开落盘日志、注册指标，完成后启动分发线程。
+     * 在此之前notice()的报警在分片队列中等待
+     */
+    private void bootstrap() {
+        long start = System.currentTimeMillis();
+        AlarmConfiguration alarmConfiguration = configuration;
+        try {
+            plugins = PluginRegistry.load();
+            openJournal(alarmConfiguration);
+            pipeline = buildPipeline(alarmConfiguration);
+            initMetrics(alarmConfiguration);
+            if (alarmConfiguration.getLocation() != null && alarmConfiguration.getBoolean("reload.enabled", true)) {
+                try {
+                    configWatcher = new AlarmConfigWatcher(alarmConfiguration.getLocation(), this::reload);
+                } catch (IOException e) {
+                    log.error("无法监听报警配置文件，热加载不可用：" + alarmConfiguration.getLocation(), e);
+                }
+            }
+            log.info("报警组件初始化完成，耗时{}ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("报警组件初始化失败", e);
+        } finally {
+            if (accepting) {
+                startListen();
+            }
+        }
+    }
+
+    private void openJournal(AlarmConfiguration alarmConfiguration) {
+        if (!alarmConfiguration.getBoolean("journal.enabled", false)) {
+            return;
+        }
+        // 目录必须显式配置：共用默认目录的多个应用会互相回放报警，日志段文件名也会冲突
+        String directory = alarmConfiguration.getString("journal.dir", null);
+        if (directory == null || directory.trim().isEmpty()) {
+            log.error("开启落盘日志需配置journal.dir（每个应用独占的目录），落盘日志未开启，详情请阅读README.md文档");
+            return;
+        }
+        try {
+            journal = new AlarmJournal(Paths.get(directory), alarmConfiguration.getInt("journal.segmentSize", 4 << 20),
+                alarmConfiguration.getInt("journal.maxSegments", 16));
+        } catch (IOException e) {
+            log.error("报警日志目录不可用，溢出报警将直接丢弃：" + directory, e);
+        }
+    }
+
+    /**
+     * 按配置构建流水线，appender执行单元尚未启动
+     *
+     * @param alarmConfiguration 配置
+     * @return 流水线
+     */
+    private AlarmPipeline buildPipeline(AlarmConfiguration alarmConfiguration) {
+        List<AppenderWorker> workers = new ArrayList<>();
         LinkedHashMap appendersMap = alarmConfiguration.getAppenders();
         if (MapUtils.isNotEmpty(appendersMap)) {
-            appendersMap.forEach((k, v) -> set(k, v, DEFAULT_APPENDER_PATH));
+            appendersMap.forEach((k, v) -> {
+                Appender appender = createAppender(k.toString(), (LinkedHashMap) v);
+                if (appender != null) {
+                    AppenderWorker worker = createWorker(k.toString(), appender, (LinkedHashMap) v);
+                    if (worker != null) {
+                        workers.add(worker);
+                    }
+                }
+            });
+        }
+        List<Filter> filters = new ArrayList<>();
+        LinkedHashMap filtersMap = alarmConfiguration.getFilters();
+        if (MapUtils.isNotEmpty(filtersMap)) {
+            filtersMap.forEach((k, v) -> {
+                Filter filter = createFilter(k.toString(), (LinkedHashMap) v);
+                if (filter != null) {
+                    filters.add(filter);
+                }
+            });
+        }
+        return new AlarmPipeline(workers, filters);
+    }
+
+    /**
+     * 优先使用注册的工厂创建，没有工厂时按类名反射加载（兼容旧的自定义appender）
+     */
+    private Appender createAppender(String name, LinkedHashMap config) {
+        AppenderFactory factory = plugins.appender(name);
+        if (factory == null) {
+            Object instance = set(name, config, DEFAULT_APPENDER_PATH);
+            return instance instanceof Appender ? (Appender) instance : null;
+        }
+        try {
+            return factory.create(new PluginConfig(name, config));
+        } catch (RuntimeException e) {
+            log.error("创建appender失败：" + name, e);
+            return null;
+        }
+    }
+
+    /**
+     * 队列、线程与限流配置有误时跳过该appender并释放其资源，不影响其他appender
+     */
+    private AppenderWorker createWorker(String name, Appender appender, LinkedHashMap config) {
+        try {
+            return new AppenderWorker(name, appender, config);
+        } catch (RuntimeException e) {
+            log.error("创建appender执行单元失败：" + name, e);
+            try {
+                appender.close();
+            } catch (RuntimeException ex) {
+                log.warn("appender[" + name + "]释放资源失败", ex);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 优先使用注册的工厂创建，没有工厂时按类名反射加载（兼容旧的自定义filter）
+     */
+    private Filter createFilter(String name, LinkedHashMap config) {
+        FilterFactory factory = plugins.filter(name);
+        if (factory == null) {
+            Object instance = set(name, config, DEFAULT_FILTERS_PATH);
+            return instance instanceof Filter ? (Filter) instance : null;
+        }
+        try {
+            return factory.create(new PluginConfig(name, config));
+        } catch (RuntimeException e) {
+            log.error("创建filter失败：" + name, e);
+            return null;
+        }
+    }
+
+    private static int sizeOf(Map map) {
+        return map == null ? 0 : map.size();
+    }
+
+    /**
+     * 热加载：在监听线程上构建新流水线并启动其appender，一次volatile写替换后，等分发线程放下旧流水线再停止；报警级别规则随之替换。
+     * 配置有误（读取失败、级别规则无效或有appender、filter未能创建）时保留原配置。settings下的其他设置需重启生效
+     */
+    private void reload() {
+        AlarmConfiguration alarmConfiguration;
+        SeverityRules rules;
+        AlarmPipeline next;
+        try {
+            alarmConfiguration = new AlarmConfiguration(configuration.getLocation());
+            rules = severityRules(alarmConfiguration);
+            next = buildPipeline(alarmConfiguration);
+        } catch (RuntimeException e) {
+            log.error("报警配置有误，保留原配置", e);
+            return;
+        }
+        if (next.getAppenders().size() != sizeOf(alarmConfiguration.getAppenders())
+            || next.getFilters().size() != sizeOf(alarmConfiguration.getFilters())) {
+            log.error("报警配置中有appender或filter未能创建，保留原配置，详情请阅读README.md文档");
+            next.shutdown(System.nanoTime());
+            return;
+        }
+        AlarmPipeline previous;
+        synchronized (pipelineLock) {
+            // 停机先置accepting再取流水线，锁内再次检查，停机取到的必定是最终的流水线
+            if (!accepting) {
+                next.shutdown(System.nanoTime());
+                return;
+            }
+            next.start();
+            previous = pipeline;
+            pipeline = next;
+            severityRules = rules;
+            configuration = alarmConfiguration;
         }
-        LinkedHashMap filters = alarmConfiguration.getFilters();
-        if (MapUtils.isNotEmpty(filters)) {
-            filters.forEach((k, v) -> set(k, v, DEFAULT_FILTERS_PATH));
+        log.info("报警配置已重新加载：appender {}个，filter {}个", next.getAppenders().size(), next.getFilters().size());
+        // 已读到旧流水线的分发线程退出后再停止，旧appender队列中的报警照常处理完
+        int droppedCount = previous.retire(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeout));
+        dropped.add(droppedCount);
+    }
+
+    /**
+     * 按路由键分片：普通与优先通道的总容量均分到各分片，分片0兼做定时任务与落盘日志回放
+     *
+     * @param alarmConfiguration 配置
+     */
+    private void initShards(AlarmConfiguration alarmConfiguration) {
+        int count = Math.max(1, alarmConfiguration.getInt("dispatcher.shards", 1));
+        int totalCapacity = alarmConfiguration.getInt("queue.capacity", 1024);
+        int capacity = Math.max(1, totalCapacity / count);
+        int priorityCapacity = Math.max(1,
+            alarmConfiguration.getInt("queue.priorityCapacity", Math.max(16, totalCapacity / 4)) / count);
+        routeByPlace = "PLACE".equalsIgnoreCase(alarmConfiguration.getString("dispatcher.routeBy", "FINGERPRINT"));
+        shards = new DispatcherShard[count];
+        for (int i = 0; i < count; i++) {
+            String name = count == 1 ? "NOTICE-DISPATCHER" : "NOTICE-DISPATCHER-" + i;
+            shards[i] = i == 0
+                ? new DispatcherShard(name, capacity, priorityCapacity, this::dispatch, this::replay, this::housekeeping)
+                : new DispatcherShard(name, capacity, priorityCapacity, this::dispatch, null, null);
         }
     }
 
-    private static void set(Object k, Object v, String path) {
+    /**
+     * 登记队列瞬时值，按配置注册JMX并启动指标导出
+     *
+     * @param alarmConfiguration 配置
+     */
+    private void initMetrics(AlarmConfiguration alarmConfiguration) {
+        DispatcherShard[] dispatcherShards = shards;
+        metrics.gauge("queue.depth", () -> {
+            long depth = 0;
+            for (DispatcherShard shard : dispatcherShards) {
+                depth += shard.size();
+            }
+            return depth;
+        });
+        metrics.gauge("queue.capacity", () -> dispatcherShards.length * dispatcherShards[0].capacity());
+        metrics.gauge("queue.priorityDepth", () -> {
+            long depth = 0;
+            for (DispatcherShard shard : dispatcherShards) {
+                depth += shard.prioritySize();
+            }
+            return depth;
+        });
+        for (int i = 0; i < dispatcherShards.length; i++) {
+            metrics.gauge("dispatcher.shard." + i + ".depth", dispatcherShards[i]::size);
+        }
+        if (deduplicator != null) {
+            AlarmDeduplicator windows = deduplicator;
+            metrics.gauge("dedup.windows", windows::size);
+        }
+        if (sampler != null) {
+            LogarithmicSampler tracked = sampler;
+            metrics.gauge("sampling.fingerprints", tracked::size);
+        }
+        if (alarmConfiguration.getBoolean("metrics.jmx", true)) {
+            metrics.registerMBean();
+        }
+        Object names = alarmConfiguration.getSetting("metrics.exporters");
+        if (!(names instanceof List) || ((List) names).isEmpty()) {
+            return;
+        }
+        List<MetricsExporter> exporters = new ArrayList<>();
+        for (Object name : (List) names) {
+            MetricsExporter exporter = newExporter(name.toString());
+            if (exporter != null) {
+                exporters.add(exporter);
+            }
+        }
+        if (exporters.isEmpty()) {
+            return;
+        }
+        long interval = Math.max(1000, alarmConfiguration.getLong("metrics.interval", 60000L));
+        metricsExporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ALARM-METRICS-EXPORTER");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metricsExporter.scheduleWithFixedDelay(() -> {
+            // 导出器之间互不影响，单个失败不终止调度
+            Map<String, Number> snapshot = Collections.unmodifiableMap(metrics.snapshot());
+            for (MetricsExporter exporter : exporters) {
+                try {
+                    exporter.export(snapshot);
+                } catch (RuntimeException e) {
+                    log.warn("导出报警指标失败：" + exporter.getClass().getName(), e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private static MetricsExporter newExporter(String name) {
+        Class<?> exporterClass;
+        try {
+            exporterClass = Class.forName(name.contains(".") ? name : DEFAULT_EXPORTER_PATH + name);
+        } catch (ClassNotFoundException e) {
+            log.error("指标导出器不存在：{}，详情请阅读README.md文档", name);
+            return null;
+        }
+        if (!MetricsExporter.class.isAssignableFrom(exporterClass)) {
+            log.error("指标导出器需要实现MetricsExporter接口：{}", name);
+            return null;
+        }
+        try {
+            return (MetricsExporter) exporterClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            log.error("指标导出器需要提供无参构造：" + name, e);
+            return null;
+        }
+    }
+
+    private static Object set(Object k, Object v, String path) {
         Class tempClass = null;
         // 根据key值加载类
         try {
@@ -72,29 +469,41 @@ public class AlarmManage {
                 // 初始化类
                 Method init = tempClass.getMethod("init", v.getClass());
                 init.invoke(instance, v);
-                if (instance instanceof Appender) {
-                    APPENDERS.add((Appender) instance);
-                } else if (instance instanceof Filter) {
-                    FILTERS.add((Filter) instance);
-                } else {
+                if (!(instance instanceof Appender) && !(instance instanceof Filter)) {
                     log.error("自定义需要继承相应的接口");
                 }
+                return instance;
             } catch (NoSuchMethodException e) {
                 log.error("没有init | validate 方法");
-            } catch (IllegalAccessException | InvocationTargetException | InstantiationException e) {
-                // ignore
+            } catch (InvocationTargetException e) {
+                log.error("初始化失败：" + k, e.getCause());
+            } catch (IllegalAccessException | InstantiationException e) {
+                log.error("无法创建实例：" + k, e);
             }
         }
+        return null;
     }
 
     private AlarmManage() {
         init();
-        startListen();
+        if (configuration.getBoolean("bootstrap.async", true)) {
+            // 首个报警不等待插件与模版加载
+            Thread thread = new Thread(this::bootstrap, "ALARM-BOOTSTRAP");
+            thread.setDaemon(true);
+            bootstrapThread = thread;
+            thread.start();
+        } else {
+            bootstrap();
+        }
+        if (configuration.getBoolean("shutdown.hook", true)) {
+            // 非spring环境（如纯dubbo）没有@PreDestroy回调
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "ALARM-SHUTDOWN"));
+        }
     }
 
     /**
-     * 单例：dubbo自定义单filter不能使用spring容器
-     * 
+     * 单例：dubbo自定义单filter不能使用spring容器。只读取配置，插件等在后台初始化，可在应用启动时调用以提前初始化
+     *
      * @return AlarmManage
      */
     public static AlarmManage getInstance() {
@@ -112,33 +521,111 @@ public class AlarmManage {
      * 初始化处理器
      */
     private void startListen() {
-        Thread thread = new Thread(() -> {
-            while (isRunning) {
-                try {
-                    BaseAlarmDto element = queue.poll(WAIT_TIME, WAIT_TIME_TIME_UNIT);
-
-                    if (element != null) {
-                        List<BaseAlarmDto> executionContexts = Lists.newArrayList(element);
-                        queue.drainTo(executionContexts);
-                        executionContexts.forEach(context -> {
-                            // 过滤
-                            boolean isNotAppenders;
-                            isNotAppenders = FILTERS.stream().map(filter -> filter.filter(context))
-                                .filter(temp -> temp).findFirst().orElse(false);
-                            if (!isNotAppenders) {
-                                // 处理任务
-                                APPENDERS.forEach(appender -> appender.append(context));
-                            }
-                        });
-                    }
-                } catch (InterruptedException e) {
-                    log.warn("线程被打断，停止分发警告", e);
-                    isRunning = false;
-                }
+        pipeline.start();
+        if (configWatcher != null) {
+            configWatcher.start();
+        }
+        for (DispatcherShard shard : shards) {
+            shard.start();
+        }
+    }
+
+    /**
+     * 定时任务，在分片0的分发线程上执行
+     */
+    private void housekeeping() {
+        sweep();
+        if (latencyMonitor != null) {
+            latencyMonitor.check(System.currentTimeMillis(), this::notice);
+        }
+        reportDropped();
+    }
+
+    /**
+     * 队列空闲且各appender积压不到一半时回放落盘的报警
+     *
+     * @return 是否回放了报警
+     */
+    private boolean replay() {
+        if (journal == null || journal.isEmpty()) {
+            return false;
+        }
+        for (AppenderWorker worker : pipeline.getWorkers()) {
+            if (worker.getBacklog() * 2 >= worker.getCapacity()) {
+                return false;
             }
-        }, "NOTICE-DISPATCHER");
-        thread.setUncaughtExceptionHandler((t, e) -> log.error("线程" + t.getName() + "已挂掉", e));
-        thread.start();
+        }
+        return journal.replay(REPLAY_BATCH, this::dispatch) > 0;
+    }
+
+    /**
+     * 汇总输出队列溢出丢弃数，避免逐条打印
+     */
+    private void reportDropped() {
+        long now = System.currentTimeMillis();
+        if (now - lastDropReport < DROP_REPORT_INTERVAL) {
+            return;
+        }
+        lastDropReport = now;
+        long total = dropped.sum();
+        if (total > reportedDropped) {
+            log.warn("报警队列已满，{}ms内按{}策略丢弃报警{}条，累计{}条", DROP_REPORT_INTERVAL, overflowPolicy,
+                total - reportedDropped, total);
+            reportedDropped = total;
+        }
+    }
+
+    /**
+     * 过滤并交给appender处理
+     *
+     * @param context 报警信息
+     */
+    private void dispatch(BaseAlarmDto context) {
+        AlarmPipeline current = pipeline;
+        while (!current.enter()) {
+            // 刚被热加载替换，改用新流水线
+            current = pipeline;
+        }
+        try {
+            dispatch(current, context);
+        } finally {
+            current.exit();
+        }
+    }
+
+    private void dispatch(AlarmPipeline current, BaseAlarmDto context) {
+        // 过滤
+        boolean isNotAppenders;
+        try {
+            isNotAppenders = current.getFilterChain().filter(context);
+        } catch (RuntimeException e) {
+            // 过滤器异常不能拖垮分发线程，按未过滤处理
+            log.error("过滤报警失败", e);
+            isNotAppenders = false;
+        }
+        if (isNotAppenders) {
+            filtered.increment();
+        } else {
+            // 延迟的额外信息（如RPC参数）在分发线程上生成一次，各appender共享结果
+            context.getExtra();
+            // 交给各appender自己的队列处理
+            current.getWorkers().forEach(worker -> worker.offer(context));
+        }
+    }
+
+    /**
+     * 关闭到期的合并窗口，输出聚合报警
+     */
+    private void sweep() {
+        if (deduplicator == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastSweep >= sweepInterval) {
+            lastSweep = now;
+            // 聚合报警回到所属分片，保持同一路由键的顺序
+            deduplicator.sweep(now, this::enqueue);
+        }
     }
 
     /**
@@ -147,15 +634,287 @@ public class AlarmManage {
      * @param context 报警信息
      */
     public void notice(BaseAlarmDto context) {
-        boolean succeed = false;
+        noticed.increment();
+        if (!accepting) {
+            // 已停机
+            dropped.increment();
+            return;
+        }
+        if (preFilter(context)) {
+            preFiltered.increment();
+            return;
+        }
+        if (context.getSeverity() == null) {
+            context.setSeverity(severityRules.classify(context));
+        }
+        severityCounters[context.getSeverity().ordinal()].increment();
+        context.setFingerprint(Fingerprints.of(context, fingerprintFrames));
+        long now = System.currentTimeMillis();
+        if (sampler != null) {
+            switch (sampler.sample(context, now)) {
+                case SUPPRESS:
+                    sampleSuppressed.increment();
+                    return;
+                case FORWARD:
+                    // 已携带周期内的真实次数，不再经过去重窗口，避免次数被窗口计数覆盖
+                    enqueue(context);
+                    return;
+                case UNTRACKED:
+                default:
+                    // 计数表已满，交给去重
+                    sampleUntracked.increment();
+            }
+        }
+        if (deduplicator != null && !deduplicator.accept(context, now)) {
+            // 窗口内重复报警，已合并计数
+            deduplicated.increment();
+            return;
+        }
+        enqueue(context);
+    }
+
+    /**
+     * 按路由键进入分片队列的对应通道，通道满时按溢出策略处理
+     *
+     * @param context 报警信息
+     */
+    private void enqueue(BaseAlarmDto context) {
+        DispatcherShard shard = route(context);
+        if (shard.offer(context)) {
+            enqueued.increment();
+        } else {
+            overflow(shard, context);
+        }
+    }
+
+    /**
+     * 路由：按指纹或地点散列到分片，同一路由键总在同一分片
+     *
+     * @param context 报警信息
+     * @return 分片
+     */
+    private DispatcherShard route(BaseAlarmDto context) {
+        if (shards.length == 1) {
+            return shards[0];
+        }
+        long key = routeByPlace ? Objects.hashCode(context.getPlace()) : context.getFingerprint();
+        // 混合高低位，避免低位分布不均
+        key ^= key >>> 32;
+        key ^= key >>> 16;
+        return shards[(int) Math.floorMod(key, (long) shards.length)];
+    }
+
+    /**
+     * 记录服务方法耗时，超过慢调用阈值时报警；未配置耗时阈值时直接返回
+     *
+     * @param service 服务接口
+     * @param method  方法名
+     * @param nanos   耗时纳秒
+     */
+    public void recordLatency(Class<?> service, String method, long nanos) {
+        if (latencyMonitor == null) {
+            return;
+        }
+        BaseAlarmDto slowCall = latencyMonitor.record(service, method, nanos);
+        if (slowCall != null) {
+            notice(slowCall);
+        }
+    }
+
+    /**
+     * 报警配置，供各接入组件读取自己的设置
+     *
+     * @return 配置
+     */
+    public AlarmConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * 耗时统计
+     *
+     * @return 未配置耗时阈值时为null
+     */
+    public LatencyMonitor getLatencyMonitor() {
+        return latencyMonitor;
+    }
+
+    /**
+     * 业务线程上的前置过滤，命中的报警不占用队列
+     *
+     * @param context 报警信息
+     * @return 是否被过滤
+     */
+    private boolean preFilter(BaseAlarmDto context) {
+        FilterChain preFilterChain = pipeline.getPreFilterChain();
+        if (preFilterChain.isEmpty()) {
+            return false;
+        }
         try {
-            succeed = queue.offer(context, WAIT_TIME, WAIT_TIME_TIME_UNIT);
-        } catch (InterruptedException e) {
-            // ignore
+            return preFilterChain.filter(context);
+        } catch (RuntimeException e) {
+            log.error("前置过滤报警失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 通道满处理，不阻塞调用线程；只在报警所属的通道内淘汰，低级别报警溢出不会挤掉高级别报警
+     *
+     * @param shard   所属分片
+     * @param context 报警信息
+     */
+    private void overflow(DispatcherShard shard, BaseAlarmDto context) {
+        overflowed.increment();
+        switch (overflowPolicy) {
+            case SAMPLE:
+                if (overflowed.sum() % sampleRate != 0) {
+                    discard(context);
+                    return;
+                }
+                // 命中抽样，按DROP_OLDEST处理
+            case DROP_OLDEST:
+                // 淘汰队头后重试一次，与其他生产者竞争失败则放弃
+                BaseAlarmDto oldest = shard.poll(AlarmLaneQueue.isPriority(context));
+                if (oldest != null) {
+                    discard(oldest);
+                }
+                if (shard.offer(context)) {
+                    enqueued.increment();
+                    return;
+                }
+                discard(context);
+                return;
+            case DROP_NEWEST:
+            default:
+                discard(context);
         }
-        if (!succeed) {
-            log.warn("通知问题失败：" + context, context.getCause());
+    }
+
+    /**
+     * 放弃入队的报警：开启落盘日志时写入日志等待回放，否则丢弃
+     *
+     * @param context 报警信息
+     */
+    private void discard(BaseAlarmDto context) {
+        if (journal == null || !journal.offer(context)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * 队列溢出丢弃的报警数
+     *
+     * @return 累计丢弃数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 前置过滤拦截的报警数
+     *
+     * @return 累计拦截数
+     */
+    public long getPreFilteredCount() {
+        return preFiltered.sum();
+    }
+
+    /**
+     * 当前流水线
+     *
+     * @return 流水线快照
+     */
+    public AlarmPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * 各appender的积压、吞吐与耗时
+     *
+     * @return appender执行单元
+     */
+    public List<AppenderWorker> getAppenderWorkers() {
+        return pipeline.getWorkers();
+    }
+
+    /**
+     * 报警组件指标
+     *
+     * @return 指标注册表
+     */
+    public AlarmMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 停机：不再接收报警，在shutdown.timeout内经过滤器与appender处理完剩余报警（appender按批处理），
+     * 超时未分发的报警写入落盘日志或丢弃，最后释放appender资源并输出处理结果。可重复调用
+     */
+    public void shutdown() {
+        if (!shutdown.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(shutdownTimeout);
+        long appendedBefore = appendedCount();
+        long droppedBefore = dropped.sum();
+        accepting = false;
+        Thread bootstrapping = bootstrapThread;
+        if (bootstrapping != null) {
+            try {
+                bootstrapping.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (configWatcher != null) {
+            configWatcher.stop();
+        }
+        for (DispatcherShard shard : shards) {
+            shard.stop(deadline);
+        }
+        for (DispatcherShard shard : shards) {
+            shard.join(deadline);
+        }
+        // 分发线程均已退出，输出合并窗口中尚未输出的聚合报警
+        if (deduplicator != null && System.nanoTime() - deadline < 0) {
+            deduplicator.sweep(Long.MAX_VALUE, this::dispatch);
+        }
+        // 截止前未能分发的报警
+        int journaled = 0;
+        for (DispatcherShard shard : shards) {
+            for (BaseAlarmDto context = shard.poll(); context != null; context = shard.poll()) {
+                if (journal != null && journal.append(context)) {
+                    journaled++;
+                } else {
+                    dropped.increment();
+                }
+            }
+        }
+        AlarmPipeline last;
+        synchronized (pipelineLock) {
+            last = pipeline;
+        }
+        dropped.add(last.shutdown(deadline));
+        if (journal != null) {
+            journal.close();
+        }
+        if (metricsExporter != null) {
+            metricsExporter.shutdownNow();
+        }
+        metrics.unregisterMBean();
+        log.info("报警组件已停止，耗时{}ms：停机期间处理{}条，落盘{}条，丢弃{}条",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), appendedCount() - appendedBefore, journaled,
+            dropped.sum() - droppedBefore);
+    }
+
+    private long appendedCount() {
+        long total = 0;
+        for (AppenderWorker worker : pipeline.getWorkers()) {
+            total += worker.getAppendedCount() + worker.getFailedCount();
         }
+        return total;
     }
 
     /**
@@ -163,7 +922,6 @@ public class AlarmManage {
      */
     @PreDestroy
     private void destroy() {
-        queue.clear();
-        isRunning = false;
+        shutdown();
     }
 }
@@ -0,0 +1,124 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.appender.Appender;
+import com.osp.issue.filter.Filter;
+import com.osp.issue.filter.FilterChain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 报警处理流水线快照：过滤器链与appender执行单元，构建完成后不再修改，热加载时整体替换。
+ * 分发线程使用前后调用{@link #enter()}/{@link #exit()}计数，替换后的旧流水线等计数归零再停止，
+ * 保证已读到旧流水线的分发线程交出的报警都由旧appender处理完
+ *
+ * @author huangqiaowei
+ * @since 2019-07-19 10:30
+ **/
+public final class AlarmPipeline {
+
+    private final List<Appender> appenders;
+    private final List<Filter> filters;
+    private final List<AppenderWorker> workers;
+    private final FilterChain preFilterChain;
+    private final FilterChain filterChain;
+    /**
+     * 正在使用本流水线的分发线程数，加上RETIRED后为负数，表示已退役
+     */
+    private final AtomicInteger users = new AtomicInteger();
+    private static final int RETIRED = Integer.MIN_VALUE;
+
+    AlarmPipeline(List<AppenderWorker> workers, List<Filter> filters) {
+        List<Appender> appenderList = new ArrayList<>(workers.size());
+        workers.forEach(worker -> appenderList.add(worker.getAppender()));
+        this.appenders = Collections.unmodifiableList(appenderList);
+        this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+        this.workers = Collections.unmodifiableList(new ArrayList<>(workers));
+        // 前置过滤器在业务线程执行，其余在分发线程执行
+        List<Filter> preFilters = new ArrayList<>();
+        List<Filter> dispatchFilters = new ArrayList<>();
+        filters.forEach(filter -> (filter.isPreFilter() ? preFilters : dispatchFilters).add(filter));
+        this.preFilterChain = new FilterChain(preFilters);
+        this.filterChain = new FilterChain(dispatchFilters);
+    }
+
+    void start() {
+        workers.forEach(AppenderWorker::start);
+    }
+
+    /**
+     * 分发线程开始使用本流水线
+     *
+     * @return 是否成功，已退役时返回false，应重新读取当前流水线
+     */
+    boolean enter() {
+        int current;
+        do {
+            current = users.get();
+            if (current < 0) {
+                return false;
+            }
+        } while (!users.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * 分发线程使用完毕
+     */
+    void exit() {
+        users.decrementAndGet();
+    }
+
+    /**
+     * 退役：已不再是当前流水线，拒绝新的使用方，等正在使用的分发线程全部退出后停止appender执行单元
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     * @return 截止时仍未处理而丢弃的报警数
+     */
+    int retire(long deadline) {
+        users.addAndGet(RETIRED);
+        // 分发线程只做过滤与入队，不会长时间占用
+        while (users.get() != RETIRED && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return shutdown(deadline);
+    }
+
+    /**
+     * 停止全部appender执行单元
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     * @return 截止时仍未处理而丢弃的报警数
+     */
+    int shutdown(long deadline) {
+        int dropped = 0;
+        for (AppenderWorker worker : workers) {
+            dropped += worker.shutdown(deadline);
+        }
+        return dropped;
+    }
+
+    public List<Appender> getAppenders() {
+        return appenders;
+    }
+
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    public List<AppenderWorker> getWorkers() {
+        return workers;
+    }
+
+    FilterChain getPreFilterChain() {
+        return preFilterChain;
+    }
+
+    FilterChain getFilterChain() {
+        return filterChain;
+    }
+}
@@ -0,0 +1,148 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.util.PluginConfig;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * appender限流：整个appender一个令牌桶，另按报警指纹各一个令牌桶，两级都取到令牌才放行。
+ * 被限流的次数由下一条放行的报警携带
+ *
+ * @author huangqiaowei
+ * @since 2019-07-15 10:48
+ **/
+final class AlarmRateLimiter {
+
+    private static final String RATE_LIMIT = "rateLimit";
+    private static final String RATE_BURST = "rateBurst";
+    private static final String FINGERPRINT_RATE_LIMIT = "fingerprintRateLimit";
+    private static final String FINGERPRINT_BURST = "fingerprintBurst";
+    private static final String FINGERPRINT_MAX_SIZE = "fingerprintMaxSize";
+    private static final int DEFAULT_FINGERPRINT_MAX_SIZE = 1024;
+
+    private final TokenBucket global;
+    private final double fingerprintRate;
+    private final int fingerprintBurst;
+    private final int maxFingerprints;
+    private final ConcurrentHashMap<Long, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final LongAdder limited;
+
+    private AlarmRateLimiter(String name, double rate, int burst, double fingerprintRate, int fingerprintBurst,
+                             int maxFingerprints) {
+        this.global = rate > 0 ? new TokenBucket(rate, burst) : null;
+        this.fingerprintRate = fingerprintRate;
+        this.fingerprintBurst = fingerprintBurst;
+        this.maxFingerprints = maxFingerprints;
+        this.limited = AlarmMetrics.getInstance().counter("appender." + name + ".rateLimited");
+    }
+
+    /**
+     * 按appender配置创建
+     *
+     * @param name   appender名称
+     * @param config appender配置
+     * @return 未配置限流时为null
+     * @throws IllegalArgumentException 配置项不是数字
+     */
+    static AlarmRateLimiter of(String name, Map config) {
+        PluginConfig settings = new PluginConfig(name, config);
+        double rate = settings.getDouble(RATE_LIMIT, 0);
+        double fingerprintRate = settings.getDouble(FINGERPRINT_RATE_LIMIT, 0);
+        if (rate <= 0 && fingerprintRate <= 0) {
+            return null;
+        }
+        return new AlarmRateLimiter(name, rate, (int) settings.getDouble(RATE_BURST, Math.max(1, rate)),
+            fingerprintRate, (int) settings.getDouble(FINGERPRINT_BURST, 1),
+            (int) settings.getDouble(FINGERPRINT_MAX_SIZE, DEFAULT_FINGERPRINT_MAX_SIZE));
+    }
+
+    /**
+     * 取令牌
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 放行的报警，携带此前被限流的次数时为副本；被限流时为null
+     */
+    BaseAlarmDto acquire(BaseAlarmDto baseAlarmDto) {
+        long now = System.nanoTime();
+        TokenBucket bucket = fingerprintRate > 0 ? bucket(baseAlarmDto.getFingerprint(), now) : null;
+        if (bucket != null && !bucket.tryAcquire(now)) {
+            bucket.suppress(System.currentTimeMillis());
+            limited.increment();
+            return null;
+        }
+        if (global != null && !global.tryAcquire(now)) {
+            // 被appender级限流，指纹的令牌还回去，限流次数只记在appender级
+            if (bucket != null) {
+                bucket.refund();
+            }
+            global.suppress(System.currentTimeMillis());
+            limited.increment();
+            return null;
+        }
+        long nowMillis = System.currentTimeMillis();
+        long since = Long.MAX_VALUE;
+        long suppressed = 0;
+        for (TokenBucket current : new TokenBucket[]{bucket, global}) {
+            if (current == null) {
+                continue;
+            }
+            long count = current.takeSuppressed();
+            if (count > 0) {
+                long sinceMillis = current.getSuppressedSince();
+                suppressed += count;
+                since = Math.min(since, sinceMillis > 0 ? sinceMillis : nowMillis);
+            }
+        }
+        if (suppressed == 0) {
+            return baseAlarmDto;
+        }
+        // 同一报警会分发给多个appender，不能修改原对象
+        BaseAlarmDto admitted = baseAlarmDto.copy();
+        admitted.setSuppressed(suppressed);
+        admitted.setSuppressedSince(LocalDateTime.ofInstant(Instant.ofEpochMilli(since), ZoneId.systemDefault()));
+        return admitted;
+    }
+
+    /**
+     * 放行的报警未能入队时调用，把其携带的限流次数还回appender级（未配置时还给指纹级）令牌桶，不会因入队失败而丢失
+     *
+     * @param admitted {@link #acquire(BaseAlarmDto)}放行的报警
+     */
+    void giveBack(BaseAlarmDto admitted) {
+        if (admitted.getSuppressed() == 0) {
+            return;
+        }
+        TokenBucket target = global != null ? global : bucket(admitted.getFingerprint(), System.nanoTime());
+        if (target == null) {
+            // 指纹桶已回收且表已满，无处归还
+            return;
+        }
+        LocalDateTime since = admitted.getSuppressedSince();
+        target.restoreSuppressed(admitted.getSuppressed(), since == null ? System.currentTimeMillis()
+            : since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    /**
+     * 指纹对应的令牌桶，超出数量上限时先回收空闲的桶，仍然超出则该指纹只受appender级限流
+     */
+    private TokenBucket bucket(long fingerprint, long now) {
+        TokenBucket bucket = buckets.get(fingerprint);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxFingerprints) {
+            buckets.values().removeIf(current -> current.isIdle(now));
+            if (buckets.size() >= maxFingerprints) {
+                return null;
+            }
+        }
+        return buckets.computeIfAbsent(fingerprint, k -> new TokenBucket(fingerprintRate, fingerprintBurst));
+    }
+}
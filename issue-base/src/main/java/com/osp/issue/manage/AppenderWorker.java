@@ -0,0 +1,277 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.appender.Appender;
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.metrics.Timer;
+import com.osp.issue.util.PluginConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个appender的独立执行单元：自有有界队列与工作线程，慢或异常都只影响自身，不拖累分发线程与其他appender
+ *
+ * @author huangqiaowei
+ * @since 2019-06-17 14:20
+ **/
+@Slf4j
+public final class AppenderWorker {
+
+    private static final String WORKERS = "workers";
+    private static final String QUEUE_SIZE = "queueSize";
+    private static final String PRIORITY_QUEUE_SIZE = "priorityQueueSize";
+    private static final String BATCH_SIZE = "batchSize";
+    private static final String FLUSH_INTERVAL = "flushInterval";
+    private static final int DEFAULT_WORKERS = 1;
+    private static final int DEFAULT_QUEUE_SIZE = 256;
+    private static final int DEFAULT_FLUSH_INTERVAL = 10000;
+    private static final long WAIT_TIME = 100;
+
+    private final String name;
+    private final Appender appender;
+    private final AlarmLaneQueue queue;
+    private final int capacity;
+    private final Thread[] threads;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final LongAdder appended;
+    private final LongAdder failed;
+    private final LongAdder rejected;
+    private final Timer latency;
+    private final AlarmRateLimiter rateLimiter;
+    private volatile boolean running = true;
+
+    AppenderWorker(String name, Appender appender, Map config) {
+        this.name = name;
+        this.appender = appender;
+        PluginConfig settings = new PluginConfig(name, config);
+        this.capacity = settings.getInt(QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+        this.queue = new AlarmLaneQueue(capacity, settings.getInt(PRIORITY_QUEUE_SIZE, Math.max(16, capacity / 4)));
+        this.threads = new Thread[Math.max(1, settings.getInt(WORKERS, DEFAULT_WORKERS))];
+        this.batchSize = settings.getInt(BATCH_SIZE, 0);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getLong(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL));
+        this.rateLimiter = AlarmRateLimiter.of(name, config);
+        AlarmMetrics metrics = AlarmMetrics.getInstance();
+        String prefix = "appender." + name + ".";
+        this.appended = metrics.counter(prefix + "appended");
+        this.failed = metrics.counter(prefix + "failed");
+        this.rejected = metrics.counter(prefix + "rejected");
+        this.latency = metrics.timer(prefix + "latency");
+        metrics.gauge(prefix + "backlog", queue::size);
+        metrics.gauge(prefix + "priorityBacklog", queue::prioritySize);
+        for (int i = 0; i < threads.length; i++) {
+            Thread thread = new Thread(batchSize > 1 ? this::workInBatch : this::work, "ALARM-APPENDER-" + name + "-" + i);
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> log.error("线程" + t.getName() + "已挂掉", e));
+            threads[i] = thread;
+        }
+    }
+
+    void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * 停机：工作线程处理完手头的报警后退出，队列中剩余的报警在截止时间前由调用线程一次性按批交给appender，
+     * 最后释放appender资源
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     * @return 截止时仍未处理而丢弃的报警数
+     */
+    int shutdown(long deadline) {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                thread.interrupt();
+            }
+        }
+        List<BaseAlarmDto> rest = new ArrayList<>(queue.size());
+        queue.drainTo(rest, Integer.MAX_VALUE);
+        int droppedCount = 0;
+        if (!rest.isEmpty()) {
+            if (System.nanoTime() - deadline < 0) {
+                appendBatch(rest);
+            } else {
+                droppedCount = rest.size();
+            }
+        }
+        try {
+            appender.close(deadline);
+        } catch (RuntimeException e) {
+            log.warn("appender[" + name + "]释放资源失败", e);
+        }
+        return droppedCount;
+    }
+
+    /**
+     * 分发线程调用，先经过限流，按级别进入队列的对应通道，通道满立即拒绝
+     *
+     * @param baseAlarmDto 报警信息
+     */
+    void offer(BaseAlarmDto baseAlarmDto) {
+        BaseAlarmDto admitted = rateLimiter == null ? baseAlarmDto : rateLimiter.acquire(baseAlarmDto);
+        if (admitted != null && !queue.offer(admitted)) {
+            rejected.increment();
+            if (rateLimiter != null) {
+                rateLimiter.giveBack(admitted);
+            }
+        }
+    }
+
+    private void work() {
+        while (running) {
+            BaseAlarmDto element;
+            try {
+                element = queue.poll(WAIT_TIME, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (element != null) {
+                append(element);
+            }
+        }
+    }
+
+    /**
+     * 批量模式：自首条报警起收集flushInterval时长或batchSize条后一次性交给appender，
+     * 收集到高级别报警时立即发送，不等待刷新间隔
+     */
+    private void workInBatch() {
+        List<BaseAlarmDto> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                BaseAlarmDto first = queue.poll(WAIT_TIME, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize && running && !containsPriority(batch)) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    // 分段等待以便及时响应停机
+                    BaseAlarmDto element = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(WAIT_TIME)),
+                        TimeUnit.NANOSECONDS);
+                    if (element != null) {
+                        batch.add(element);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                if (!batch.isEmpty()) {
+                    appendBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private static boolean containsPriority(List<BaseAlarmDto> batch) {
+        for (BaseAlarmDto baseAlarmDto : batch) {
+            if (AlarmLaneQueue.isPriority(baseAlarmDto)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void append(BaseAlarmDto baseAlarmDto) {
+        long start = System.nanoTime();
+        try {
+            appender.append(baseAlarmDto);
+            appended.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("appender[" + name + "]处理报警失败", e);
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void appendBatch(List<BaseAlarmDto> batch) {
+        long start = System.nanoTime();
+        try {
+            appender.appendBatch(batch);
+            appended.add(batch.size());
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            log.error("appender[" + name + "]批量处理报警失败", e);
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Appender getAppender() {
+        return appender;
+    }
+
+    /**
+     * 当前积压数，含优先通道
+     *
+     * @return 队列中等待处理的报警数
+     */
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getAppendedCount() {
+        return appended.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * 队满被拒绝的报警数
+     *
+     * @return 拒绝数
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 平均处理耗时
+     *
+     * @return 毫秒
+     */
+    public double getAverageLatencyMillis() {
+        return latency.getMeanMillis();
+    }
+
+    /**
+     * 最大处理耗时
+     *
+     * @return 毫秒
+     */
+    public double getMaxLatencyMillis() {
+        return latency.getMaxMillis();
+    }
+}
@@ -0,0 +1,187 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 分发分片：自有环形队列与分发线程，同一路由键的报警总是进入同一分片，分片内保持顺序，不同分片并行分发。
+ * 每个分片有普通与优先两个通道，分发线程每轮先排空优先通道，普通通道每轮最多取NORMAL_BATCH条，
+ * 高级别报警最多等待一小批普通报警分发完
+ *
+ * @author huangqiaowei
+ * @since 2019-07-17 10:10
+ **/
+@Slf4j
+final class DispatcherShard {
+
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int NORMAL_BATCH = 64;
+
+    private final AlarmRingBuffer<BaseAlarmDto> queue;
+    private final AlarmRingBuffer<BaseAlarmDto> priorityQueue;
+    private final Consumer<BaseAlarmDto> dispatcher;
+    /**
+     * 队列空闲时执行，返回true表示做了工作、不挂起
+     */
+    private final BooleanSupplier idleTask;
+    /**
+     * 每轮循环执行的定时任务
+     */
+    private final Runnable periodicTask;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean parked;
+    private volatile long drainDeadline;
+
+    DispatcherShard(String name, int capacity, int priorityCapacity, Consumer<BaseAlarmDto> dispatcher,
+                    BooleanSupplier idleTask, Runnable periodicTask) {
+        this.queue = new AlarmRingBuffer<>(capacity);
+        this.priorityQueue = new AlarmRingBuffer<>(priorityCapacity);
+        this.dispatcher = dispatcher;
+        this.idleTask = idleTask;
+        this.periodicTask = periodicTask;
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((t, e) -> log.error("线程" + t.getName() + "已挂掉", e));
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    private void run() {
+        List<BaseAlarmDto> executionContexts = new ArrayList<>();
+        while (running) {
+            if (dispatchBatch(executionContexts) == 0 && (idleTask == null || !idleTask.getAsBoolean())) {
+                await();
+            }
+            if (periodicTask != null) {
+                periodicTask.run();
+            }
+        }
+        if (drainDeadline != 0) {
+            drain(executionContexts);
+        }
+    }
+
+    /**
+     * 分发一批：优先通道全部，普通通道最多NORMAL_BATCH条
+     *
+     * @return 分发条数
+     */
+    private int dispatchBatch(List<BaseAlarmDto> executionContexts) {
+        int count = priorityQueue.drainTo(executionContexts, priorityQueue.capacity());
+        count += queue.drainTo(executionContexts, NORMAL_BATCH);
+        if (count > 0) {
+            executionContexts.forEach(dispatcher);
+            executionContexts.clear();
+        }
+        return count;
+    }
+
+    /**
+     * 队列为空时挂起，生产者入队后唤醒，最多等待WAIT_NANOS
+     */
+    private void await() {
+        parked = true;
+        if (queue.isEmpty() && priorityQueue.isEmpty()) {
+            LockSupport.parkNanos(this, WAIT_NANOS);
+        }
+        parked = false;
+        if (Thread.interrupted()) {
+            log.warn("线程{}被打断，停止分发警告", thread.getName());
+            running = false;
+        }
+    }
+
+    /**
+     * 停机时在截止时间前分发队列中剩余的报警
+     */
+    private void drain(List<BaseAlarmDto> executionContexts) {
+        while (System.nanoTime() - drainDeadline < 0 && dispatchBatch(executionContexts) > 0) {
+            // 截止前逐批分发，优先通道在前
+        }
+    }
+
+    /**
+     * 按级别进入对应通道，不阻塞
+     *
+     * @param context 报警信息
+     * @return 通道满时为false
+     */
+    boolean offer(BaseAlarmDto context) {
+        if (!(AlarmLaneQueue.isPriority(context) ? priorityQueue : queue).offer(context)) {
+            return false;
+        }
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * 淘汰指定通道的队头，用于DROP_OLDEST，低级别报警溢出不会淘汰优先通道中的报警
+     *
+     * @param priority 是否优先通道
+     * @return 最旧的报警，通道为空时为null
+     */
+    BaseAlarmDto poll(boolean priority) {
+        return (priority ? priorityQueue : queue).poll();
+    }
+
+    /**
+     * 取出剩余报警，优先通道在前，用于停机
+     *
+     * @return 报警信息，两个通道都为空时为null
+     */
+    BaseAlarmDto poll() {
+        BaseAlarmDto context = priorityQueue.poll();
+        return context != null ? context : queue.poll();
+    }
+
+    int size() {
+        return queue.size() + priorityQueue.size();
+    }
+
+    int prioritySize() {
+        return priorityQueue.size();
+    }
+
+    int capacity() {
+        return queue.capacity();
+    }
+
+    /**
+     * 停止分发：截止时间前排空队列后退出
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     */
+    void stop(long deadline) {
+        drainDeadline = deadline == 0 ? 1 : deadline;
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * 等待分发线程退出，超时则打断
+     *
+     * @param deadline 截止时间，System.nanoTime()
+     */
+    void join(long deadline) {
+        try {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            thread.interrupt();
+        }
+    }
+}
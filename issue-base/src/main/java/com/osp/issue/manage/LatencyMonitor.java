@@ -0,0 +1,119 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.metrics.LatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 按服务方法统计耗时：超过绝对阈值的单次慢调用立即报警，百分位耗时超过阈值时在统计窗口结束时报警
+ *
+ * @author huangqiaowei
+ * @since 2019-07-01 11:20
+ **/
+public final class LatencyMonitor {
+
+    private final long slowCallNanos;
+    private final double percentile;
+    private final String percentileLabel;
+    private final long percentileThresholdMicros;
+    private final long intervalMillis;
+    private final long minSamples;
+    /**
+     * 服务接口 -> 方法名 -> 直方图，两级查找避免每次调用拼接key
+     */
+    private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, LatencyHistogram>> histograms =
+        new ConcurrentHashMap<>();
+    private long lastCheck = System.currentTimeMillis();
+
+    LatencyMonitor(long slowCallMillis, double percentile, long percentileThresholdMillis, long intervalMillis,
+                   long minSamples) {
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.percentile = percentile;
+        this.percentileLabel = "P" + (percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile));
+        this.percentileThresholdMicros = TimeUnit.MILLISECONDS.toMicros(percentileThresholdMillis);
+        this.intervalMillis = intervalMillis;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * 记录一次调用耗时，业务线程调用
+     *
+     * @param service 服务接口
+     * @param method  方法名
+     * @param nanos   耗时纳秒
+     * @return 单次慢调用报警，未超过阈值时为null
+     */
+    BaseAlarmDto record(Class<?> service, String method, long nanos) {
+        if (percentileThresholdMicros > 0) {
+            histogram(service, method).record(nanos);
+        }
+        if (slowCallNanos <= 0 || nanos < slowCallNanos) {
+            return null;
+        }
+        // 消息不含实际耗时，保证同一方法的慢调用指纹一致，可被去重窗口合并
+        BaseAlarmDto alarm = new BaseAlarmDto();
+        alarm.setPlace(service.getName() + "." + method);
+        alarm.setErrorMessage("慢调用：耗时超过" + TimeUnit.NANOSECONDS.toMillis(slowCallNanos) + "ms");
+        alarm.setExtra("耗时：" + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+        return alarm;
+    }
+
+    private LatencyHistogram histogram(Class<?> service, String method) {
+        ConcurrentHashMap<String, LatencyHistogram> methods = histograms.get(service);
+        if (methods == null) {
+            methods = histograms.computeIfAbsent(service, k -> new ConcurrentHashMap<>());
+        }
+        LatencyHistogram histogram = methods.get(method);
+        if (histogram == null) {
+            histogram = methods.computeIfAbsent(method, k -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    /**
+     * 统计窗口结束时检查百分位耗时，分发线程调用
+     *
+     * @param now     当前时间毫秒
+     * @param emitter 报警接收者
+     */
+    void check(long now, Consumer<BaseAlarmDto> emitter) {
+        if (percentileThresholdMicros <= 0 || now - lastCheck < intervalMillis) {
+            return;
+        }
+        lastCheck = now;
+        for (Map.Entry<Class<?>, ConcurrentHashMap<String, LatencyHistogram>> service : histograms.entrySet()) {
+            for (Map.Entry<String, LatencyHistogram> method : service.getValue().entrySet()) {
+                LatencyHistogram.Snapshot snapshot = method.getValue().snapshot(true);
+                long value = snapshot.getValueAtPercentile(percentile);
+                if (snapshot.getCount() < minSamples || value < percentileThresholdMicros) {
+                    continue;
+                }
+                BaseAlarmDto alarm = new BaseAlarmDto();
+                alarm.setPlace(service.getKey().getName() + "." + method.getKey());
+                alarm.setErrorMessage(percentileLabel + "耗时超过" + TimeUnit.MICROSECONDS.toMillis(percentileThresholdMicros) + "ms");
+                alarm.setExtra("统计窗口：" + intervalMillis + "ms，调用次数：" + snapshot.getCount()
+                    + "，P50：" + toMillis(snapshot.getValueAtPercentile(50))
+                    + "ms，" + percentileLabel + "：" + toMillis(value)
+                    + "ms，最大：" + toMillis(snapshot.getMax()) + "ms");
+                emitter.accept(alarm);
+            }
+        }
+    }
+
+    /**
+     * 当前各方法的耗时直方图
+     *
+     * @return 服务接口 -> 方法名 -> 直方图
+     */
+    public Map<Class<?>, ? extends Map<String, LatencyHistogram>> getHistograms() {
+        return histograms;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,188 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数抽样：同一指纹在一个周期内只放行第1、10、100、1000…次（底数可配），放行的报警携带周期内的真实发生次数与起止时间。
+ * 周期自该指纹首次出现起算，到期后下次出现重新计数。
+ * 计数表为开放寻址的两个AtomicLongArray（指纹、起始秒+次数），无锁、无对象分配，计数为一次CAS；
+ * 到期的槽位可被其他指纹复用，复用瞬间与旧指纹的并发计数可能有一次误差，对抽样无影响
+ *
+ * @author huangqiaowei
+ * @since 2019-08-02 10:30
+ **/
+final class LogarithmicSampler {
+
+    enum Decision {
+        /**
+         * 命中抽样点，放行
+         */
+        FORWARD,
+        /**
+         * 未命中抽样点，只计数
+         */
+        SUPPRESS,
+        /**
+         * 计数表已满，未跟踪，交给后续的去重处理
+         */
+        UNTRACKED
+    }
+
+    private static final int MAX_PROBES = 16;
+    private static final long EMPTY = 0;
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final int base;
+    private final long periodSeconds;
+    private final int mask;
+    private final AtomicLongArray keys;
+    /**
+     * 高32位为周期起始（相对baseMillis的秒数），低32位为周期内次数，0表示空
+     */
+    private final AtomicLongArray values;
+    private final long baseMillis = System.currentTimeMillis();
+
+    /**
+     * @param base          底数，至少为2
+     * @param periodMillis  周期（毫秒），按秒计，至少1秒
+     * @param maxSize       最多跟踪的指纹数，向上取整为2的幂
+     */
+    LogarithmicSampler(int base, long periodMillis, int maxSize) {
+        this.base = Math.max(2, base);
+        this.periodSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(periodMillis));
+        int size = Integer.highestOneBit(Math.max(maxSize, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.keys = new AtomicLongArray(size);
+        this.values = new AtomicLongArray(size);
+    }
+
+    /**
+     * 生产者线程调用：计数并判断是否放行，放行且不是周期内首次时写入次数与起止时间
+     *
+     * @param baseAlarmDto 已计算指纹的报警
+     * @param now          当前时间毫秒
+     * @return 抽样结果
+     */
+    Decision sample(BaseAlarmDto baseAlarmDto, long now) {
+        long key = baseAlarmDto.getFingerprint() == EMPTY ? 1 : baseAlarmDto.getFingerprint();
+        int nowSeconds = (int) TimeUnit.MILLISECONDS.toSeconds(now - baseMillis);
+        int index = slot(key, nowSeconds);
+        if (index < 0) {
+            return Decision.UNTRACKED;
+        }
+        long value;
+        long next;
+        do {
+            value = values.get(index);
+            next = value == EMPTY || expired(value, nowSeconds)
+                ? pack(nowSeconds, 1) : pack(start(value), Math.min(count(value) + 1, COUNT_MASK));
+        } while (!values.compareAndSet(index, value, next));
+        long count = count(next);
+        if (!isSamplePoint(count)) {
+            return Decision.SUPPRESS;
+        }
+        if (count > 1) {
+            baseAlarmDto.setCount(count);
+            baseAlarmDto.setFirstTime(toLocalDateTime(baseMillis + TimeUnit.SECONDS.toMillis(start(next))));
+            baseAlarmDto.setLastTime(toLocalDateTime(now));
+        }
+        return Decision.FORWARD;
+    }
+
+    /**
+     * 线性探测：先在探测范围内查找本指纹（槽位不会变回空，遇到空槽即可停止），
+     * 找不到时占用第一个空槽或到期槽，与其他线程竞争失败则重试
+     *
+     * @return 槽位下标，探测范围内都被其他未到期指纹占用时为-1
+     */
+    private int slot(long key, int nowSeconds) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            int index = mix(key) & mask;
+            int free = -1;
+            for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & mask) {
+                long current = keys.get(index);
+                if (current == key) {
+                    return index;
+                }
+                if (current == EMPTY) {
+                    free = free < 0 ? index : free;
+                    break;
+                }
+                if (free < 0 && expired(values.get(index), nowSeconds)) {
+                    free = index;
+                }
+            }
+            if (free < 0) {
+                return -1;
+            }
+            long current = keys.get(free);
+            if ((current == EMPTY || expired(values.get(free), nowSeconds)) && keys.compareAndSet(free, current, key)) {
+                // 复用到期槽位时其值已到期，计数时自然从1开始
+                return free;
+            }
+        }
+        return -1;
+    }
+
+    private boolean expired(long value, int nowSeconds) {
+        return value != EMPTY && nowSeconds - start(value) >= periodSeconds;
+    }
+
+    /**
+     * 1、base、base^2…
+     */
+    private boolean isSamplePoint(long count) {
+        while (count % base == 0) {
+            count /= base;
+        }
+        return count == 1;
+    }
+
+    /**
+     * 当前周期内跟踪的指纹数，遍历计数表，仅供指标使用
+     *
+     * @return 指纹数
+     */
+    int size() {
+        int nowSeconds = (int) TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - baseMillis);
+        int size = 0;
+        for (int i = 0; i <= mask; i++) {
+            long value = values.get(i);
+            if (value != EMPTY && !expired(value, nowSeconds)) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static long pack(int startSeconds, long count) {
+        return ((long) startSeconds << 32) | count;
+    }
+
+    private static int start(long value) {
+        return (int) (value >>> 32);
+    }
+
+    private static long count(long value) {
+        return value & COUNT_MASK;
+    }
+
+    /**
+     * 指纹已是散列值，再混合一次高位，避免低位分布不均
+     */
+    private static int mix(long key) {
+        long h = key ^ (key >>> 32);
+        h ^= h >>> 16;
+        return (int) h;
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
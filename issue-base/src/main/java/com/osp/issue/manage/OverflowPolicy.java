@@ -0,0 +1,34 @@
+package com.osp.issue.manage;
+
+/**
+ * 报警队列已满时的处理策略
+ *
+ * @author huangqiaowei
+ * @since 2019-06-13 16:02
+ **/
+public enum OverflowPolicy {
+
+    /**
+     * 丢弃新报警
+     */
+    DROP_NEWEST,
+
+    /**
+     * 淘汰最旧的报警，保留新报警
+     */
+    DROP_OLDEST,
+
+    /**
+     * 抽样：溢出的报警每sampleRate条保留一条（淘汰最旧的），其余丢弃
+     */
+    SAMPLE;
+
+    static OverflowPolicy of(String name) {
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(name)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("不支持的队列溢出策略：" + name);
+    }
+}
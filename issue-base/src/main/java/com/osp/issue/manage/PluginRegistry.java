@@ -0,0 +1,72 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.appender.AppenderFactory;
+import com.osp.issue.filter.FilterFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+
+/**
+ * 通过ServiceLoader发现的appender、filter工厂，按名称索引，启动时加载一次
+ *
+ * @author huangqiaowei
+ * @since 2019-07-22 11:30
+ **/
+@Slf4j
+final class PluginRegistry {
+
+    private final Map<String, AppenderFactory> appenders;
+    private final Map<String, FilterFactory> filters;
+
+    private PluginRegistry(Map<String, AppenderFactory> appenders, Map<String, FilterFactory> filters) {
+        this.appenders = appenders;
+        this.filters = filters;
+    }
+
+    /**
+     * 使用线程上下文类加载器发现工厂，单个工厂加载失败不影响其他工厂
+     *
+     * @return 注册表
+     */
+    static PluginRegistry load() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return new PluginRegistry(load(AppenderFactory.class, AppenderFactory::getName, classLoader),
+            load(FilterFactory.class, FilterFactory::getName, classLoader));
+    }
+
+    private static <T> Map<String, T> load(Class<T> type, Function<T, String> naming, ClassLoader classLoader) {
+        Map<String, T> factories = new HashMap<>();
+        Iterator<T> iterator = ServiceLoader.load(type, classLoader).iterator();
+        while (true) {
+            T factory;
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                factory = iterator.next();
+            } catch (ServiceConfigurationError e) {
+                log.error("加载" + type.getSimpleName() + "失败", e);
+                continue;
+            }
+            T previous = factories.putIfAbsent(naming.apply(factory), factory);
+            if (previous != null) {
+                log.warn("{}名称{}重复，忽略{}", type.getSimpleName(), naming.apply(factory), factory.getClass().getName());
+            }
+        }
+        return Collections.unmodifiableMap(factories);
+    }
+
+    AppenderFactory appender(String name) {
+        return appenders.get(name);
+    }
+
+    FilterFactory filter(String name) {
+        return filters.get(name);
+    }
+}
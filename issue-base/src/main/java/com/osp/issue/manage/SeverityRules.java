@@ -0,0 +1,132 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.dto.Severity;
+import com.osp.issue.dto.ThrowableSnapshot;
+import com.osp.issue.util.PatternUnion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 报警级别规则：未显式设置级别的报警按配置顺序逐条匹配，首条命中的规则决定级别，都未命中时为默认级别。
+ * 异常类型在整个cause链上精确匹配（数据库不可达等异常常被包装），地点与错误消息为正则，多条以、分隔，
+ * 同一规则内的多个条件需同时满足
+ *
+ * @author huangqiaowei
+ * @since 2019-07-31 11:05
+ **/
+final class SeverityRules {
+
+    private static final String SEPARATOR = "、";
+
+    private final List<Rule> rules;
+    private final Severity defaultSeverity;
+
+    private SeverityRules(List<Rule> rules, Severity defaultSeverity) {
+        this.rules = rules;
+        this.defaultSeverity = defaultSeverity;
+    }
+
+    /**
+     * 解析配置
+     *
+     * @param rules           规则列表，每条为包含level及exceptions、places、messages之一的map
+     * @param defaultSeverity 默认级别名称
+     * @return 规则
+     * @throws IllegalArgumentException 级别名称或正则无效
+     */
+    static SeverityRules of(Object rules, String defaultSeverity) {
+        List<Rule> parsed = new ArrayList<>();
+        if (rules instanceof List) {
+            for (Object item : (List<?>) rules) {
+                if (item instanceof Map) {
+                    parsed.add(Rule.of((Map<?, ?>) item));
+                }
+            }
+        }
+        return new SeverityRules(parsed, Severity.of(defaultSeverity));
+    }
+
+    /**
+     * 确定级别
+     *
+     * @param baseAlarmDto 报警信息
+     * @return 级别
+     */
+    Severity classify(BaseAlarmDto baseAlarmDto) {
+        for (Rule rule : rules) {
+            if (rule.matches(baseAlarmDto)) {
+                return rule.severity;
+            }
+        }
+        return defaultSeverity;
+    }
+
+    private static final class Rule {
+        private final Severity severity;
+        private final Set<String> exceptions;
+        private final PatternUnion places;
+        private final PatternUnion messages;
+
+        private Rule(Severity severity, Set<String> exceptions, PatternUnion places, PatternUnion messages) {
+            this.severity = severity;
+            this.exceptions = exceptions;
+            this.places = places;
+            this.messages = messages;
+        }
+
+        private static Rule of(Map<?, ?> config) {
+            Object level = config.get("level");
+            if (level == null) {
+                throw new IllegalArgumentException("报警级别规则缺少level：" + config);
+            }
+            Set<String> exceptions = Collections.emptySet();
+            Object exceptionNames = config.get("exceptions");
+            if (exceptionNames != null) {
+                exceptions = new HashSet<>();
+                for (String name : exceptionNames.toString().split(SEPARATOR)) {
+                    if (!name.trim().isEmpty()) {
+                        exceptions.add(name.trim());
+                    }
+                }
+            }
+            return new Rule(Severity.of(level.toString()), exceptions, compile(config.get("places")),
+                compile(config.get("messages")));
+        }
+
+        /**
+         * 多条正则合并为一个，与FilterByMsg一致
+         */
+        private static PatternUnion compile(Object value) {
+            return value == null ? null : PatternUnion.compile(value.toString(), SEPARATOR);
+        }
+
+        private boolean matches(BaseAlarmDto baseAlarmDto) {
+            if (!exceptions.isEmpty() && !causedBy(baseAlarmDto.getException())) {
+                return false;
+            }
+            if (places != null && !matches(places, baseAlarmDto.getPlace())) {
+                return false;
+            }
+            return messages == null || matches(messages, baseAlarmDto.getErrorMessage());
+        }
+
+        private boolean causedBy(ThrowableSnapshot snapshot) {
+            for (ThrowableSnapshot current = snapshot; current != null; current = current.getCause()) {
+                if (exceptions.contains(current.getClassName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean matches(PatternUnion patterns, String value) {
+            return value != null && patterns.matches(value);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.osp.issue.manage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶：以GCRA（理论到达时间）实现，状态只有一个AtomicLong，取令牌为一次CAS。
+ * 同时记录被限流的次数与起始时间，供下一条放行的报警携带
+ *
+ * @author huangqiaowei
+ * @since 2019-07-15 10:20
+ **/
+final class TokenBucket {
+
+    /**
+     * 生成一个令牌的间隔
+     */
+    private final long intervalNanos;
+    /**
+     * 允许提前消耗的时长，即桶容量减一个令牌
+     */
+    private final long toleranceNanos;
+    /**
+     * 理论到达时间，System.nanoTime()
+     */
+    private final AtomicLong theoreticalArrival;
+    private final AtomicLong suppressed = new AtomicLong();
+    private volatile long suppressedSince;
+
+    /**
+     * @param permitsPerMinute 每分钟令牌数
+     * @param burst            桶容量，至少为1
+     */
+    TokenBucket(double permitsPerMinute, int burst) {
+        this.intervalNanos = (long) (TimeUnit.MINUTES.toNanos(1) / permitsPerMinute);
+        this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        // 初始为满桶；再提前一个间隔，调用方在创建前读取的时间也能取到令牌（取令牌时从当前时间起算，不会多出令牌）
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - toleranceNanos - intervalNanos);
+    }
+
+    /**
+     * 尝试取一个令牌
+     *
+     * @param now System.nanoTime()
+     * @return 是否取到
+     */
+    boolean tryAcquire(long now) {
+        long current;
+        long next;
+        do {
+            current = theoreticalArrival.get();
+            long start = current - now > 0 ? current : now;
+            if (start - now > toleranceNanos) {
+                return false;
+            }
+            next = start + intervalNanos;
+        } while (!theoreticalArrival.compareAndSet(current, next));
+        return true;
+    }
+
+    /**
+     * 归还刚取到的令牌，用于另一级限流拒绝时
+     */
+    void refund() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * 记录一次限流；先写起始时间再发布次数，读取方取到次数后即可看到对应的起始时间
+     *
+     * @param nowMillis 当前时间毫秒
+     */
+    void suppress(long nowMillis) {
+        if (suppressed.get() == 0) {
+            suppressedSince = nowMillis;
+        }
+        suppressed.incrementAndGet();
+    }
+
+    /**
+     * 归还取出的限流次数，用于携带次数的报警未能入队时，由下一条放行的报警重新携带
+     *
+     * @param count       限流次数
+     * @param sinceMillis 首次限流时间毫秒
+     */
+    void restoreSuppressed(long count, long sinceMillis) {
+        if (suppressed.get() == 0 || sinceMillis < suppressedSince) {
+            suppressedSince = sinceMillis;
+        }
+        suppressed.addAndGet(count);
+    }
+
+    /**
+     * 取出并清零限流次数
+     *
+     * @return 上次放行以来的限流次数
+     */
+    long takeSuppressed() {
+        return suppressed.get() == 0 ? 0 : suppressed.getAndSet(0);
+    }
+
+    /**
+     * 首次限流时间，需在{@link #takeSuppressed()}之后读取
+     *
+     * @return 毫秒，尚未限流过时为0
+     */
+    long getSuppressedSince() {
+        return suppressedSince;
+    }
+
+    /**
+     * 桶已满且没有待携带的限流次数，可以回收
+     *
+     * @param now System.nanoTime()
+     * @return 是否空闲
+     */
+    boolean isIdle(long now) {
+        return theoreticalArrival.get() - now + toleranceNanos <= 0 && suppressed.get() == 0;
+    }
+}
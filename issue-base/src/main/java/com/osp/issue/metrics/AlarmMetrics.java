@@ -0,0 +1,133 @@
+package com.osp.issue.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 报警组件自身的指标注册表：计数器（LongAdder分段累加）、瞬时值与计时器，
+ * 通过JMX（com.osp.issue:type=AlarmMetrics）及{@link MetricsExporter}对外暴露，用于监控报警链路本身
+ *
+ * @author huangqiaowei
+ * @since 2019-07-08 10:12
+ **/
+@Slf4j
+public final class AlarmMetrics {
+
+    private static final AlarmMetrics INSTANCE = new AlarmMetrics();
+    static final String OBJECT_NAME = "com.osp.issue:type=AlarmMetrics";
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private AlarmMetrics() {
+    }
+
+    /**
+     * 单例：appender、filter在AlarmManage初始化过程中即需要登记指标
+     *
+     * @return AlarmMetrics
+     */
+    public static AlarmMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取或创建计数器，调用方应缓存返回值，避免热路径上查表
+     *
+     * @param name 指标名
+     * @return 计数器
+     */
+    public LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * 登记瞬时值，同名覆盖
+     *
+     * @param name     指标名
+     * @param supplier 取值函数，导出时调用，需线程安全且不阻塞
+     */
+    public void gauge(String name, Supplier<? extends Number> supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * 获取或创建计时器
+     *
+     * @param name 指标名
+     * @return 计时器
+     */
+    public Timer timer(String name) {
+        Timer timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+    /**
+     * 当前全部指标，计时器展开为 .count .mean .p99 .max（毫秒）
+     *
+     * @return 指标名 -> 当前值
+     */
+    public SortedMap<String, Number> snapshot() {
+        SortedMap<String, Number> metrics = new TreeMap<>();
+        counters.forEach((name, counter) -> metrics.put(name, counter.sum()));
+        gauges.forEach((name, supplier) -> {
+            try {
+                Number value = supplier.get();
+                if (value != null) {
+                    metrics.put(name, value);
+                }
+            } catch (RuntimeException e) {
+                log.debug("读取指标" + name + "失败", e);
+            }
+        });
+        timers.forEach((name, timer) -> {
+            metrics.put(name + ".count", timer.getCount());
+            metrics.put(name + ".mean", timer.getMeanMillis());
+            metrics.put(name + ".p99", timer.getPercentileMillis(99));
+            metrics.put(name + ".max", timer.getMaxMillis());
+        });
+        return metrics;
+    }
+
+    /**
+     * 注册到平台MBeanServer，重复注册时忽略
+     */
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new AlarmMetricsMBean(this), objectName);
+            }
+        } catch (JMException e) {
+            log.warn("注册报警指标MBean失败", e);
+        }
+    }
+
+    /**
+     * 从平台MBeanServer注销
+     */
+    public void unregisterMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("注销报警指标MBean失败", e);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.osp.issue.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * 以日志形式输出指标，便于接入日志采集
+ *
+ * @author huangqiaowei
+ * @since 2019-07-08 10:46
+ **/
+@Slf4j
+public class LogMetricsExporter implements MetricsExporter {
+
+    @Override
+    public void export(Map<String, Number> metrics) {
+        log.info("报警组件指标：{}", metrics);
+    }
+}
@@ -0,0 +1,19 @@
+package com.osp.issue.metrics;
+
+import java.util.Map;
+
+/**
+ * 指标导出：按settings.metrics.interval周期调用，在独立线程执行，实现类需提供无参构造
+ *
+ * @author huangqiaowei
+ * @since 2019-07-08 10:40
+ **/
+public interface MetricsExporter {
+
+    /**
+     * 导出一次指标
+     *
+     * @param metrics 指标名 -> 当前值，按名称排序
+     */
+    void export(Map<String, Number> metrics);
+}
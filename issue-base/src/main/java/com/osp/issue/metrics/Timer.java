@@ -0,0 +1,72 @@
+package com.osp.issue.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时计时器：次数、总耗时、最大耗时与耗时分布，记录过程无锁
+ *
+ * @author huangqiaowei
+ * @since 2019-07-08 10:05
+ **/
+public final class Timer {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Timer() {
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 纳秒
+     */
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        histogram.record(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // 竞争失败重试
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 平均耗时
+     *
+     * @return 毫秒
+     */
+    public double getMeanMillis() {
+        long total = count.sum();
+        return total == 0 ? 0 : totalNanos.sum() / (double) total / NANOS_PER_MILLI;
+    }
+
+    /**
+     * 最大耗时
+     *
+     * @return 毫秒
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * 百分位耗时，精度同{@link LatencyHistogram}
+     *
+     * @param percentile 百分位，如99
+     * @return 毫秒
+     */
+    public double getPercentileMillis(double percentile) {
+        return histogram.snapshot(false).getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -4,8 +4,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.MapUtils;
 import org.yaml.snakeyaml.Yaml;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -21,14 +28,40 @@ public class AlarmConfiguration {
      * 加载alarm工程配置文件名
      */
     private static final String BOOTSTRAP_FILE = "alarm.yml";
+    /**
+     * 外部配置文件路径的系统属性，指定后优先于classpath下的alarm.yml，且可热加载
+     */
+    public static final String LOCATION_PROPERTY = "alarm.config";
     private static final String DEFAULT_APPENDERS = "appenders";
     private static final String DEFAULT_FILTERS = "filters";
+    private static final String DEFAULT_SETTINGS = "settings";
+    private static final String PATH_SEPARATOR = ".";
     private ConcurrentHashMap map;
+    private final Path location;
 
     public AlarmConfiguration() {
-        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(BOOTSTRAP_FILE);
+        this(externalLocation());
+    }
+
+    /**
+     * 读取指定配置文件
+     *
+     * @param location 外部配置文件，为null时读取classpath下的alarm.yml
+     */
+    public AlarmConfiguration(Path location) {
+        this.location = location;
         Yaml props = new Yaml();
-        map = new ConcurrentHashMap<>(props.load(in));
+        if (location == null) {
+            InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(BOOTSTRAP_FILE);
+            map = new ConcurrentHashMap<>(props.load(in));
+        } else {
+            try (InputStream in = Files.newInputStream(location)) {
+                map = new ConcurrentHashMap<>(props.load(in));
+            } catch (IOException e) {
+                log.error("读取报警配置文件失败：" + location, e);
+                throw new UncheckedIOException(e);
+            }
+        }
         if (MapUtils.isEmpty(map)) {
             log.error("alarm工程初始化失败，读取配置文件为空");
             throw new NullPointerException("alarm配置文件为空");
@@ -37,6 +70,20 @@ public class AlarmConfiguration {
         }
     }
 
+    private static Path externalLocation() {
+        String location = System.getProperty(LOCATION_PROPERTY);
+        return location == null || location.trim().isEmpty() ? null : Paths.get(location.trim());
+    }
+
+    /**
+     * 外部配置文件
+     *
+     * @return 读取classpath下的alarm.yml时为null
+     */
+    public Path getLocation() {
+        return location;
+    }
+
     /**
      * 获取所有appender
      *
@@ -54,4 +101,91 @@ public class AlarmConfiguration {
     public LinkedHashMap getFilters() {
         return (LinkedHashMap) map.get(DEFAULT_FILTERS);
     }
+
+    /**
+     * 获取全局设置
+     *
+     * @return map
+     */
+    public LinkedHashMap getSettings() {
+        return (LinkedHashMap) map.get(DEFAULT_SETTINGS);
+    }
+
+    /**
+     * 按路径读取settings下的配置项，如：dedup.window
+     *
+     * @param path 以.分隔的路径
+     * @return 配置值，不存在时为null
+     */
+    public Object getSetting(String path) {
+        Object current = getSettings();
+        StringTokenizer tokenizer = new StringTokenizer(path, PATH_SEPARATOR);
+        while (tokenizer.hasMoreTokens()) {
+            if (!(current instanceof Map)) {
+                return null;
+            }
+            current = ((Map) current).get(tokenizer.nextToken());
+        }
+        return current;
+    }
+
+    /**
+     * 读取整数配置，配置有误时记录错误并使用默认值，不能因报警设置阻止应用启动
+     *
+     * @param path         以.分隔的路径
+     * @param defaultValue 默认值
+     * @return 配置值
+     */
+    public long getLong(String path, long defaultValue) {
+        Object value = getSetting(path);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            log.error("报警设置{}不是整数：{}，使用默认值{}，详情请阅读README.md文档", path, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取小数配置，配置有误时记录错误并使用默认值
+     *
+     * @param path         以.分隔的路径
+     * @param defaultValue 默认值
+     * @return 配置值
+     */
+    public double getDouble(String path, double defaultValue) {
+        Object value = getSetting(path);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            log.error("报警设置{}不是数字：{}，使用默认值{}，详情请阅读README.md文档", path, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public int getInt(String path, int defaultValue) {
+        return (int) getLong(path, defaultValue);
+    }
+
+    public boolean getBoolean(String path, boolean defaultValue) {
+        Object value = getSetting(path);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.toString().trim());
+    }
+
+    public String getString(String path, String defaultValue) {
+        Object value = getSetting(path);
+        return value == null ? defaultValue : value.toString();
+    }
 }
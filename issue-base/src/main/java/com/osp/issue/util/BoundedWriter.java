@@ -0,0 +1,102 @@
+package com.osp.issue.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 有容量上限的Writer：按UTF-8字节数计量，超出上限时停止写入并抛出{@link LimitExceededException}，
+ * 调用方据此中断序列化并追加截断标记
+ *
+ * @author huangqiaowei
+ * @since 2019-07-05 10:12
+ **/
+public final class BoundedWriter extends Writer {
+
+    private final StringBuilder buffer;
+    private final int maxBytes;
+    private int bytes;
+    private boolean truncated;
+
+    public BoundedWriter(int maxBytes) {
+        this.maxBytes = maxBytes;
+        this.buffer = new StringBuilder(Math.min(maxBytes, 1024));
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            write(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            write(str.charAt(i));
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (truncated) {
+            throw LimitExceededException.INSTANCE;
+        }
+        int size = c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate((char) c) ? 2 : 3;
+        if (bytes + size > maxBytes) {
+            truncated = true;
+            throw LimitExceededException.INSTANCE;
+        }
+        bytes += size;
+        buffer.append((char) c);
+    }
+
+    /**
+     * 追加内容，不受上限约束，用于截断标记等
+     *
+     * @param value 内容
+     */
+    public void appendUnbounded(String value) {
+        buffer.append(value);
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public void flush() {
+        // 内存缓冲，无需刷新
+    }
+
+    @Override
+    public void close() {
+        // 内存缓冲，无需关闭
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+
+    /**
+     * 超出容量上限，单例且不填充栈，中断序列化的代价很低
+     */
+    public static final class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+        private static final LimitExceededException INSTANCE = new LimitExceededException();
+
+        private LimitExceededException() {
+            super("超出容量上限", null);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
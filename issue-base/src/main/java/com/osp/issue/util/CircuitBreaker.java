@@ -0,0 +1,104 @@
+package com.osp.issue.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 熔断器：连续失败达到阈值后打开，打开期间直接拒绝调用；
+ * 打开时长过后进入半开，只放行一次探测调用，成功则关闭，失败则重新打开
+ *
+ * @author huangqiaowei
+ * @since 2019-07-24 10:05
+ **/
+public final class CircuitBreaker {
+
+    public enum State {
+        /**
+         * 正常放行
+         */
+        CLOSED,
+        /**
+         * 熔断，直接拒绝
+         */
+        OPEN,
+        /**
+         * 探测中，只放行一次调用
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    /**
+     * @param failureThreshold 打开前允许的连续失败次数，至少为1
+     * @param openMillis       打开时长（毫秒）
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMillis));
+    }
+
+    /**
+     * 是否放行本次调用，放行后必须以{@link #onSuccess()}或{@link #onFailure()}报告结果
+     *
+     * @return 是否放行
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            default:
+                // 半开时已有探测在途则拒绝
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    /**
+     * 调用成功
+     *
+     * @return 熔断器是否因本次成功由打开（半开）转为关闭
+     */
+    public synchronized boolean onSuccess() {
+        boolean recovered = state != State.CLOSED;
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+        return recovered;
+    }
+
+    /**
+     * 调用失败
+     *
+     * @return 熔断器是否因本次失败打开
+     */
+    public synchronized boolean onFailure() {
+        probing = false;
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            boolean opened = state == State.CLOSED;
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            failures = 0;
+            return opened;
+        }
+        return false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,97 @@
+package com.osp.issue.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 预编译模板：初始化时把 ${ key } 模板拆成文本段与占位符段，渲染时按段顺序直接写入输出缓冲区
+ *
+ * @param <C> 渲染上下文类型
+ * @author huangqiaowei
+ * @since 2019-06-14 10:12
+ **/
+public final class CompiledTemplate<C> {
+
+    /**
+     * 模板段：文本段输出常量，占位符段输出上下文中的值
+     *
+     * @param <C> 渲染上下文类型
+     */
+    @FunctionalInterface
+    public interface Segment<C> {
+
+        /**
+         * 写出本段内容
+         *
+         * @param context 渲染上下文
+         * @param out     输出缓冲区
+         */
+        void write(C context, StringBuilder out);
+    }
+
+    private final List<Segment<C>> segments;
+    private final int literalLength;
+
+    private CompiledTemplate(List<Segment<C>> segments, int literalLength) {
+        this.segments = Collections.unmodifiableList(segments);
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param template 模板内容
+     * @param binder   占位符名称到模板段的绑定，返回null时占位符输出为空
+     * @param <C>      渲染上下文类型
+     * @return 编译后的模板
+     */
+    public static <C> CompiledTemplate<C> compile(String template, Function<String, Segment<C>> binder) {
+        List<Segment<C>> segments = new ArrayList<>();
+        int literalLength = 0;
+        int position = 0;
+        while (position < template.length()) {
+            int start = template.indexOf("${", position);
+            int end = start < 0 ? -1 : template.indexOf('}', start);
+            if (start < 0 || end < 0) {
+                start = template.length();
+            }
+            if (start > position) {
+                String literal = template.substring(position, start);
+                literalLength += literal.length();
+                segments.add((context, out) -> out.append(literal));
+            }
+            if (start == template.length()) {
+                break;
+            }
+            Segment<C> placeholder = binder.apply(template.substring(start + 2, end).trim());
+            if (placeholder != null) {
+                segments.add(placeholder);
+            }
+            position = end + 1;
+        }
+        return new CompiledTemplate<>(segments, literalLength);
+    }
+
+    /**
+     * 渲染模板到输出缓冲区
+     *
+     * @param context 渲染上下文
+     * @param out     输出缓冲区
+     */
+    public void render(C context, StringBuilder out) {
+        for (Segment<C> segment : segments) {
+            segment.write(context, out);
+        }
+    }
+
+    /**
+     * 模板中固定文本的长度，可用于预估输出缓冲区大小
+     *
+     * @return 固定文本长度
+     */
+    public int getLiteralLength() {
+        return literalLength;
+    }
+}
@@ -1,12 +1,12 @@
 package com.osp.issue.util;
 
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.metrics.Timer;
 import lombok.extern.slf4j.Slf4j;
 import microsoft.exchange.webservices.data.core.ExchangeService;
 import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
 import microsoft.exchange.webservices.data.core.exception.service.local.ServiceLocalException;
 import microsoft.exchange.webservices.data.core.service.item.EmailMessage;
-import microsoft.exchange.webservices.data.credential.ExchangeCredentials;
-import microsoft.exchange.webservices.data.credential.WebCredentials;
 import microsoft.exchange.webservices.data.property.complex.MessageBody;
 
 import java.net.URI;
@@ -14,6 +14,14 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author：lj 链接：https://www.jianshu.com/p/7f26f2703176
@@ -21,7 +29,24 @@ import java.util.List;
 @Slf4j
 public class ExchangeClient {
 
+    /**
+     * 异步发送的默认线程池，队满时直接返回失败，不占用调用线程
+     */
+    private static final ExecutorService DEFAULT_EXECUTOR = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(1024), runnable -> {
+            Thread thread = new Thread(runnable, "EXCHANGE-SENDER");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    private static final LongAdder SENT = AlarmMetrics.getInstance().counter("exchange.sent");
+    private static final LongAdder FAILED = AlarmMetrics.getInstance().counter("exchange.failed");
+    private static final LongAdder REJECTED = AlarmMetrics.getInstance().counter("exchange.rejected");
+    private static final Timer SEND_TIMER = AlarmMetrics.getInstance().timer("exchange.send");
+
     private final String hostname;
+    private final String url;
+    private final int timeout;
+    private final Executor executor;
     private final ExchangeVersion exchangeVersion;
     private final String domain;
     private final String username;
@@ -32,9 +57,13 @@ public class ExchangeClient {
     private final List<String> recipientBcc;
     private final List<String> attachments;
     private final String message;
+    private volatile ExchangeSessionPool sessionPool;
 
     private ExchangeClient(ExchangeClientBuilder builder) {
         this.hostname = builder.hostname;
+        this.url = builder.url;
+        this.timeout = builder.timeout;
+        this.executor = builder.executor;
         this.exchangeVersion = builder.exchangeVersion;
         this.domain = builder.domain;
         this.username = builder.username;
@@ -48,21 +77,119 @@ public class ExchangeClient {
     }
 
     public boolean sendExchange() {
-        // The Exchange Server Version.
-        ExchangeService exchangeService = new ExchangeService(exchangeVersion);
+        return sendExchange(message);
+    }
 
-        // Credentials to sign in the MS Exchange Server.
-        ExchangeCredentials exchangeCredentials = new WebCredentials(username, password, domain);
-        exchangeService.setCredentials(exchangeCredentials);
+    /**
+     * 使用当前配置发送指定正文，客户端可在多次发送间复用
+     *
+     * @param message 邮件正文
+     * @return 是否发送成功
+     */
+    public boolean sendExchange(String message) {
+        return sendExchange(subject, message);
+    }
 
-        // URL of exchange web service for the mailbox.
+    /**
+     * 使用当前配置发送指定标题与正文
+     *
+     * @param subject 邮件标题
+     * @param message 邮件正文
+     * @return 是否发送成功
+     */
+    public boolean sendExchange(String subject, String message) {
+        ExchangeSessionPool pool;
         try {
-            exchangeService.setUrl(new URI("https://" + hostname + "/ews/Exchange.asmx"));
+            pool = getSessionPool();
         } catch (URISyntaxException ex) {
             log.info("An exception occured while creating the uri for exchange service.", ex);
+            FAILED.increment();
             return false;
         }
+        ExchangeService exchangeService = pool.borrow();
+        boolean sent = false;
+        long start = System.nanoTime();
+        try {
+            sent = send(exchangeService, subject, message);
+        } finally {
+            SEND_TIMER.record(System.nanoTime() - start);
+            (sent ? SENT : FAILED).increment();
+            if (sent) {
+                pool.release(exchangeService);
+            } else {
+                pool.invalidate(exchangeService);
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * 异步发送，调用方不必等待EWS往返
+     *
+     * @return 发送结果
+     */
+    public CompletableFuture<Boolean> sendAsync() {
+        return sendAsync(message);
+    }
+
+    /**
+     * 异步发送指定正文
+     *
+     * @param message 邮件正文
+     * @return 发送结果，发送线程池已满时立即返回false
+     */
+    public CompletableFuture<Boolean> sendAsync(String message) {
+        return sendAsync(subject, message);
+    }
+
+    /**
+     * 异步发送指定标题与正文
+     *
+     * @param subject 邮件标题
+     * @param message 邮件正文
+     * @return 发送结果，发送线程池已满时立即返回false
+     */
+    public CompletableFuture<Boolean> sendAsync(String subject, String message) {
+        try {
+            return CompletableFuture.supplyAsync(() -> sendExchange(subject, message), executor);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Exchange sender is saturated, the email is dropped.");
+            REJECTED.increment();
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * 释放本客户端对会话池的引用，其他客户端仍在使用时会话池保持打开
+     */
+    public synchronized void close() {
+        ExchangeSessionPool pool = sessionPool;
+        if (pool != null) {
+            sessionPool = null;
+            pool.close();
+        }
+    }
+
+    /**
+     * 会话池按地址与凭证共享，首次发送时获取；每个客户端只持有一次引用
+     */
+    private ExchangeSessionPool getSessionPool() throws URISyntaxException {
+        ExchangeSessionPool pool = sessionPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = sessionPool;
+                if (pool == null) {
+                    // URL of exchange web service for the mailbox.
+                    URI uri = new URI(url != null && !url.isEmpty() ? url : "https://" + hostname + "/ews/Exchange.asmx");
+                    pool = ExchangeSessionPool.of(uri, exchangeVersion, username, password, domain, timeout);
+                    sessionPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
 
+    private boolean send(ExchangeService exchangeService, String subject, String message) {
         // The email.
         EmailMessage emailMessage;
         try {
@@ -126,6 +253,9 @@ public class ExchangeClient {
     public static class ExchangeClientBuilder {
 
         private String hostname;
+        private String url;
+        private int timeout;
+        private Executor executor;
         private ExchangeVersion exchangeVersion;
         private String domain;
         private String username;
@@ -138,6 +268,7 @@ public class ExchangeClient {
         private String message;
 
         public ExchangeClientBuilder() {
+            this.executor = DEFAULT_EXECUTOR;
             this.exchangeVersion = ExchangeVersion.Exchange2010_SP1;
             this.hostname = "";
             this.username = "";
@@ -162,6 +293,40 @@ public class ExchangeClient {
             return this;
         }
 
+        /**
+         * The full URL of the Exchange Web Service. Overrides {@link #hostname(String)}, for example to point the
+         * client at a local stub endpoint such as http://localhost:8080/ews/Exchange.asmx
+         *
+         * @param url the URL of the Exchange Web Service.
+         * @return the builder for chain usage.
+         */
+        public ExchangeClientBuilder url(String url) {
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * The request timeout of the Exchange Web Service. Values not greater than zero keep the library default.
+         *
+         * @param timeout the timeout in milliseconds.
+         * @return the builder for chain usage.
+         */
+        public ExchangeClientBuilder timeout(int timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * The executor used by {@link ExchangeClient#sendAsync(String, String)}.
+         *
+         * @param executor the executor for asynchronous sends.
+         * @return the builder for chain usage.
+         */
+        public ExchangeClientBuilder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
         /**
          * The Exchange Web Server version.
          *
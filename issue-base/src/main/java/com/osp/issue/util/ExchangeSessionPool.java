@@ -0,0 +1,170 @@
+package com.osp.issue.util;
+
+import lombok.extern.slf4j.Slf4j;
+import microsoft.exchange.webservices.data.core.ExchangeService;
+import microsoft.exchange.webservices.data.core.enumeration.misc.ExchangeVersion;
+import microsoft.exchange.webservices.data.credential.WebCredentials;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * ExchangeService会话池：同一地址与凭证共用一个池，会话在发送间复用，避免每封邮件重新建立HTTP/TLS连接。
+ * ExchangeService本身不是线程安全的，借出期间由调用线程独占。
+ * 池按引用计数共享，热加载时新旧appender使用同一个池，最后一个使用方关闭时才真正关闭
+ *
+ * @author huangqiaowei
+ * @since 2019-06-18 10:30
+ **/
+@Slf4j
+public final class ExchangeSessionPool {
+
+    private static final int DEFAULT_MAX_IDLE = 4;
+    /**
+     * 获取与关闭都很少发生，以POOLS自身加锁，同时保护各池的引用计数
+     */
+    private static final Map<Key, ExchangeSessionPool> POOLS = new HashMap<>();
+
+    private final Key key;
+    private final URI uri;
+    private final BlockingQueue<ExchangeService> idle = new ArrayBlockingQueue<>(DEFAULT_MAX_IDLE);
+    private volatile boolean closed;
+    private int references;
+
+    private ExchangeSessionPool(Key key, URI uri) {
+        this.key = key;
+        this.uri = uri;
+    }
+
+    /**
+     * 获取地址与凭证对应的会话池并增加引用计数，使用方不再需要时调用{@link #close()}
+     *
+     * @param uri      EWS地址
+     * @param version  Exchange版本
+     * @param username 账号
+     * @param password 密码
+     * @param domain   域
+     * @param timeout  请求超时毫秒，不大于0时使用默认值
+     * @return 会话池
+     */
+    public static ExchangeSessionPool of(URI uri, ExchangeVersion version, String username, String password,
+                                         String domain, int timeout) {
+        Key key = new Key(uri.toString(), version, username, password, domain, timeout);
+        synchronized (POOLS) {
+            ExchangeSessionPool pool = POOLS.computeIfAbsent(key, k -> new ExchangeSessionPool(k, uri));
+            pool.references++;
+            return pool;
+        }
+    }
+
+    /**
+     * 借出会话，没有空闲会话时新建
+     *
+     * @return 会话
+     */
+    public ExchangeService borrow() {
+        ExchangeService service = idle.poll();
+        return service != null ? service : create();
+    }
+
+    /**
+     * 归还会话，空闲会话已满或池已关闭时直接关闭
+     *
+     * @param service 会话
+     */
+    public void release(ExchangeService service) {
+        if (closed || !idle.offer(service)) {
+            close(service);
+        }
+    }
+
+    /**
+     * 发送失败的会话连接状态未知，不再复用
+     *
+     * @param service 会话
+     */
+    public void invalidate(ExchangeService service) {
+        close(service);
+    }
+
+    private ExchangeService create() {
+        ExchangeService service = new ExchangeService(key.version);
+        service.setCredentials(new WebCredentials(key.username, key.password, key.domain));
+        service.setUrl(uri);
+        if (key.timeout > 0) {
+            service.setTimeout(key.timeout);
+        }
+        return service;
+    }
+
+    /**
+     * 减少引用计数，最后一个使用方关闭时关闭会话池，之后以相同参数获取时新建会话池
+     */
+    public void close() {
+        synchronized (POOLS) {
+            if (references <= 0 || --references > 0) {
+                return;
+            }
+            POOLS.remove(key, this);
+        }
+        shutdown();
+    }
+
+    private void shutdown() {
+        closed = true;
+        ExchangeService service;
+        while ((service = idle.poll()) != null) {
+            close(service);
+        }
+    }
+
+    private static void close(ExchangeService service) {
+        try {
+            service.close();
+        } catch (Exception e) {
+            log.debug("关闭Exchange会话失败", e);
+        }
+    }
+
+    private static final class Key {
+
+        private final String uri;
+        private final ExchangeVersion version;
+        private final String username;
+        private final String password;
+        private final String domain;
+        private final int timeout;
+
+        private Key(String uri, ExchangeVersion version, String username, String password, String domain, int timeout) {
+            this.uri = uri;
+            this.version = version;
+            this.username = username;
+            this.password = password;
+            this.domain = domain;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return timeout == other.timeout && uri.equals(other.uri) && version == other.version
+                && Objects.equals(username, other.username) && Objects.equals(password, other.password)
+                && Objects.equals(domain, other.domain);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uri, version, username, password, domain, timeout);
+        }
+    }
+}
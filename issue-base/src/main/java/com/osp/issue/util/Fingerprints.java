@@ -0,0 +1,87 @@
+package com.osp.issue.util;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.dto.ThrowableSnapshot;
+
+/**
+ * 报警指纹计算：异常类型 + 前几个应用栈帧 + 地点，使用FNV-1a 64位散列，计算过程不产生中间字符串
+ *
+ * @author huangqiaowei
+ * @since 2019-06-12 10:21
+ **/
+public final class Fingerprints {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 非应用栈帧前缀：JDK、容器与RPC框架
+     */
+    private static final String[] FRAMEWORK_PREFIXES = {"java.", "javax.", "sun.", "jdk.", "com.sun.",
+        "com.alibaba.dubbo.", "org.springframework.", "io.netty.", "org.apache."};
+
+    private Fingerprints() {
+    }
+
+    /**
+     * 计算报警指纹
+     *
+     * @param baseAlarmDto 报警信息
+     * @param frames       参与计算的应用栈帧数
+     * @return 指纹
+     */
+    public static long of(BaseAlarmDto baseAlarmDto, int frames) {
+        long hash = FNV_OFFSET;
+        hash = hash(hash, baseAlarmDto.getPlace());
+        ThrowableSnapshot cause = baseAlarmDto.getException();
+        if (cause == null) {
+            // 没有异常时只能依靠错误信息区分
+            return hash(hash, baseAlarmDto.getErrorMessage());
+        }
+        hash = hash(hash, cause.getClassName());
+        StackTraceElement[] stackTrace = cause.getStackTrace();
+        int used = 0;
+        for (int i = 0; i < stackTrace.length && used < frames; i++) {
+            if (isApplicationFrame(stackTrace[i])) {
+                hash = hash(hash, stackTrace[i]);
+                used++;
+            }
+        }
+        // 全部是框架栈帧时退化为取栈顶
+        for (int i = 0; used == 0 && i < stackTrace.length && i < frames; i++) {
+            hash = hash(hash, stackTrace[i]);
+        }
+        return hash;
+    }
+
+    private static boolean isApplicationFrame(StackTraceElement element) {
+        String className = element.getClassName();
+        for (String prefix : FRAMEWORK_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(long hash, StackTraceElement element) {
+        hash = hash(hash, element.getClassName());
+        hash = hash(hash, element.getMethodName());
+        return mix(hash, element.getLineNumber());
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return mix(hash, 0);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = mix(hash, value.charAt(i));
+        }
+        // 分隔符，避免 "ab"+"c" 与 "a"+"bc" 冲突
+        return mix(hash, 0x1f);
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+}
@@ -0,0 +1,63 @@
+package com.osp.issue.util;
+
+/**
+ * HTML转义，直接写入输出缓冲区
+ *
+ * @author huangqiaowei
+ * @since 2019-06-14 10:40
+ **/
+public final class HtmlEscapes {
+
+    private HtmlEscapes() {
+    }
+
+    /**
+     * 转义并追加
+     *
+     * @param value 原始内容，null时不输出
+     * @param out   输出缓冲区
+     */
+    public static void escape(CharSequence value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        escape(value, 0, value.length(), out);
+    }
+
+    /**
+     * 转义并追加指定区间
+     *
+     * @param value 原始内容
+     * @param start 起始位置（含）
+     * @param end   结束位置（不含）
+     * @param out   输出缓冲区
+     */
+    public static void escape(CharSequence value, int start, int end, StringBuilder out) {
+        int flushed = start;
+        for (int i = start; i < end; i++) {
+            String replacement;
+            switch (value.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = "&quot;";
+                    break;
+                case '\'':
+                    replacement = "&#39;";
+                    break;
+                default:
+                    continue;
+            }
+            out.append(value, flushed, i).append(replacement);
+            flushed = i + 1;
+        }
+        out.append(value, flushed, end);
+    }
+}
@@ -0,0 +1,108 @@
+package com.osp.issue.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 多条正则的并集：整体匹配（matches）任一条即命中。普通规则合并为 (?:a)|(?:b) 一个正则；
+ * 含反向引用（\1、\k&lt;name&gt;）或命名分组的规则合并后分组编号会错位、组名会冲突，单独编译。
+ * Matcher按线程复用，匹配过程不分配内存
+ *
+ * @author huangqiaowei
+ * @since 2019-08-05 10:20
+ **/
+public final class PatternUnion {
+
+    private final ThreadLocal<Matcher[]> matchers;
+
+    private PatternUnion(List<Pattern> patterns) {
+        this.matchers = ThreadLocal.withInitial(() -> {
+            Matcher[] array = new Matcher[patterns.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = patterns.get(i).matcher("");
+            }
+            return array;
+        });
+    }
+
+    /**
+     * 编译以分隔符分隔的多条正则，忽略空规则
+     *
+     * @param value     规则
+     * @param separator 分隔符
+     * @return 没有规则时为null
+     * @throws IllegalArgumentException 某条规则不是合法的正则
+     */
+    public static PatternUnion compile(String value, String separator) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        List<Pattern> patterns = new ArrayList<>();
+        StringJoiner joiner = new StringJoiner("|");
+        for (String regex : value.split(separator)) {
+            if (regex.isEmpty()) {
+                continue;
+            }
+            // 逐条先编译，便于定位配置错误
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("规则不是合法的正则：" + regex, e);
+            }
+            if (hasGroupReference(regex)) {
+                patterns.add(pattern);
+            } else {
+                joiner.add("(?:" + regex + ")");
+            }
+        }
+        if (joiner.length() > 0) {
+            patterns.add(0, Pattern.compile(joiner.toString()));
+        }
+        return patterns.isEmpty() ? null : new PatternUnion(patterns);
+    }
+
+    /**
+     * 是否含反向引用或命名分组；转义的反斜杠与括号不计，\Q...\E等少见写法按含有处理，只是不参与合并
+     */
+    private static boolean hasGroupReference(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            char c = regex.charAt(i);
+            char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if ((next >= '1' && next <= '9') || next == 'k' || next == 'Q') {
+                    return true;
+                }
+                // 跳过被转义的字符
+                i++;
+            } else if (c == '(' && next == '?' && i + 3 < regex.length() && regex.charAt(i + 2) == '<'
+                && Character.isLetter(regex.charAt(i + 3))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 整体匹配任一条规则
+     *
+     * @param input 输入
+     * @return 是否命中
+     */
+    public boolean matches(String input) {
+        Matcher[] array = matchers.get();
+        boolean matched = false;
+        for (int i = 0; i < array.length && !matched; i++) {
+            matched = array[i].reset(input).matches();
+        }
+        for (Matcher matcher : array) {
+            // 不持有输入的引用
+            matcher.reset("");
+        }
+        return matched;
+    }
+}
@@ -0,0 +1,129 @@
+package com.osp.issue.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * appender、filter在alarm.yml中配置块的类型化视图：按名称读取并转换，类型不符时抛出带配置项名称的异常
+ *
+ * @author huangqiaowei
+ * @since 2019-07-22 10:15
+ **/
+public final class PluginConfig {
+
+    private static final String SEPARATOR = "、";
+
+    private final String name;
+    private final Map<?, ?> values;
+
+    public PluginConfig(String name, Map<?, ?> values) {
+        this.name = name;
+        this.values = values == null ? Collections.emptyMap() : values;
+    }
+
+    /**
+     * 插件名称，即alarm.yml中的key
+     *
+     * @return 名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getString(String key) {
+        return getString(key, null);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = values.get(key);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    /**
+     * 必填项
+     *
+     * @param key 配置项
+     * @return 值
+     * @throws IllegalArgumentException 未配置或为空
+     */
+    public String require(String key) {
+        String value = getString(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(name + "缺少配置项：" + key);
+        }
+        return value;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = values.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return value == null ? defaultValue : Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + "的配置项" + key + "不是整数：" + value, e);
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        Object value = values.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + "的配置项" + key + "不是数字：" + value, e);
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = values.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.toString().trim());
+    }
+
+    /**
+     * 列表项：yaml列表，或以、分隔的字符串，忽略空白项
+     *
+     * @param key 配置项
+     * @return 列表，未配置时为空列表
+     */
+    public List<String> getList(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        Collection<?> items = value instanceof Collection ? (Collection<?>) value : splitToList(value.toString());
+        List<String> list = new ArrayList<>(items.size());
+        for (Object item : items) {
+            String text = item == null ? "" : item.toString().trim();
+            if (!text.isEmpty()) {
+                list.add(text);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    private static List<String> splitToList(String value) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, value.split(SEPARATOR));
+        return list;
+    }
+
+    /**
+     * 原始配置，供自定义的复杂结构使用
+     *
+     * @return 只读视图
+     */
+    public Map<?, ?> asMap() {
+        return Collections.unmodifiableMap(values);
+    }
+}
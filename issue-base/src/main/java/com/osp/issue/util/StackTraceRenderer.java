@@ -0,0 +1,204 @@
+package com.osp.issue.util;
+
+import com.osp.issue.dto.ThrowableSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 堆栈渲染：直接遍历异常快照的栈帧写入HTML输出缓冲区，不经过printStackTrace与逐行拆分。
+ * cause与外层相同的栈帧输出为“... n more”，连续的框架栈帧（dubbo、spring、netty等）折叠为一行，
+ * 指定包前缀的栈帧高亮显示
+ *
+ * @author huangqiaowei
+ * @since 2019-07-26 09:50
+ **/
+public final class StackTraceRenderer {
+
+    public static final List<String> DEFAULT_HIGHLIGHT_PACKAGES = Collections.singletonList("com.osp.");
+    public static final List<String> DEFAULT_COLLAPSE_PACKAGES = Collections.unmodifiableList(Arrays.asList(
+        "com.alibaba.dubbo.", "org.apache.dubbo.", "org.springframework.", "io.netty.", "org.jboss.netty.",
+        "sun.reflect.", "java.lang.reflect.", "com.sun.proxy."));
+    public static final int DEFAULT_COLLAPSE_MIN_FRAMES = 3;
+
+    private static final String INDENT = "&nbsp;&nbsp;&nbsp;&nbsp;";
+    private static final String HIGHLIGHT_START = "<span style=\"color:#c0f\">";
+    private static final String COLLAPSED_START = "<span style=\"color:#999\">";
+    private static final String SPAN_END = "</span>";
+    private static final String LINE_END = "<br>";
+
+    private final String[] highlightPackages;
+    private final String[] collapsePackages;
+    private final int collapseMinFrames;
+    private final int maxDepth;
+
+    /**
+     * @param highlightPackages 高亮的包前缀
+     * @param collapsePackages  折叠的框架包前缀
+     * @param collapseMinFrames 连续多少个框架栈帧才折叠，小于2时不折叠
+     * @param maxDepth          每层异常最多输出的行数（折叠行计一行），不大于0时不限制
+     */
+    public StackTraceRenderer(List<String> highlightPackages, List<String> collapsePackages, int collapseMinFrames,
+                              int maxDepth) {
+        this.highlightPackages = highlightPackages.toArray(new String[0]);
+        this.collapsePackages = collapsePackages.toArray(new String[0]);
+        this.collapseMinFrames = collapseMinFrames < 2 ? Integer.MAX_VALUE : collapseMinFrames;
+        this.maxDepth = maxDepth <= 0 ? Integer.MAX_VALUE : maxDepth;
+    }
+
+    /**
+     * 默认配置：高亮com.osp，折叠dubbo、spring、netty与反射栈帧，不限深度
+     *
+     * @return 渲染器
+     */
+    public static StackTraceRenderer defaults() {
+        return new StackTraceRenderer(DEFAULT_HIGHLIGHT_PACKAGES, DEFAULT_COLLAPSE_PACKAGES,
+            DEFAULT_COLLAPSE_MIN_FRAMES, 0);
+    }
+
+    /**
+     * 渲染异常快照及cause链
+     *
+     * @param snapshot 异常快照，null时不输出
+     * @param out      输出缓冲区
+     */
+    public void render(ThrowableSnapshot snapshot, StringBuilder out) {
+        boolean cause = false;
+        for (ThrowableSnapshot current = snapshot; current != null; current = current.getCause()) {
+            renderHeader(current, cause, out);
+            renderFrames(current, out);
+            cause = true;
+        }
+    }
+
+    /**
+     * 渲染单层异常的首行（类名与消息），不含cause
+     *
+     * @param snapshot 异常快照
+     * @param cause    是否为cause，是则加“Caused by: ”前缀
+     * @param out      输出缓冲区
+     */
+    public void renderHeader(ThrowableSnapshot snapshot, boolean cause, StringBuilder out) {
+        boolean highlight = matches(snapshot.getClassName(), highlightPackages) >= 0;
+        out.append(INDENT);
+        if (highlight) {
+            out.append(HIGHLIGHT_START);
+        }
+        if (cause) {
+            out.append("Caused by: ");
+        }
+        HtmlEscapes.escape(snapshot.getClassName(), out);
+        if (snapshot.getMessage() != null) {
+            out.append(": ");
+            HtmlEscapes.escape(snapshot.getMessage(), out);
+        }
+        if (highlight) {
+            out.append(SPAN_END);
+        }
+        out.append(LINE_END);
+    }
+
+    /**
+     * 渲染单层异常的栈帧，不含首行与cause；结果只取决于栈帧与省略、折叠数，不受消息影响
+     *
+     * @param snapshot 异常快照
+     * @param out      输出缓冲区
+     */
+    public void renderFrames(ThrowableSnapshot snapshot, StringBuilder out) {
+        StackTraceElement[] frames = snapshot.getStackTrace();
+        int lines = 0;
+        int i = 0;
+        while (i < frames.length && lines < maxDepth) {
+            int end = frameworkRunEnd(frames, i);
+            if (end - i >= collapseMinFrames) {
+                writeCollapsed(frames, i, end, out);
+                i = end;
+            } else {
+                writeFrame(frames[i], out);
+                i++;
+            }
+            lines++;
+        }
+        int omitted = frames.length - i + snapshot.getOmittedFrames();
+        if (omitted > 0) {
+            out.append(INDENT).append(COLLAPSED_START).append("\t... 省略").append(omitted).append("帧")
+                .append(SPAN_END).append(LINE_END);
+        }
+        if (snapshot.getCommonFrames() > 0) {
+            out.append(INDENT).append("\t... ").append(snapshot.getCommonFrames()).append(" more").append(LINE_END);
+        }
+    }
+
+    /**
+     * 自start起连续框架栈帧的结束位置（不含），start不是框架栈帧时返回start
+     */
+    private int frameworkRunEnd(StackTraceElement[] frames, int start) {
+        int end = start;
+        while (end < frames.length && matches(frames[end].getClassName(), collapsePackages) >= 0) {
+            end++;
+        }
+        return end;
+    }
+
+    private void writeCollapsed(StackTraceElement[] frames, int start, int end, StringBuilder out) {
+        out.append(INDENT).append(COLLAPSED_START).append("\t... 折叠").append(end - start).append("个框架栈帧（");
+        // 按出现顺序列出涉及的包前缀，通常只有两三个，线性去重即可
+        List<String> packages = new ArrayList<>(4);
+        for (int i = start; i < end; i++) {
+            String collapsePackage = collapsePackages[matches(frames[i].getClassName(), collapsePackages)];
+            if (!packages.contains(collapsePackage)) {
+                if (!packages.isEmpty()) {
+                    out.append('、');
+                }
+                packages.add(collapsePackage);
+                HtmlEscapes.escape(collapsePackage, 0, collapsePackage.length() - (collapsePackage.endsWith(".") ? 1 : 0), out);
+            }
+        }
+        out.append("）").append(SPAN_END).append(LINE_END);
+    }
+
+    /**
+     * 与StackTraceElement.toString()格式一致，逐段转义写入
+     */
+    private void writeFrame(StackTraceElement frame, StringBuilder out) {
+        boolean highlight = matches(frame.getClassName(), highlightPackages) >= 0;
+        out.append(INDENT);
+        if (highlight) {
+            out.append(HIGHLIGHT_START);
+        }
+        out.append("\tat ");
+        HtmlEscapes.escape(frame.getClassName(), out);
+        out.append('.');
+        HtmlEscapes.escape(frame.getMethodName(), out);
+        out.append('(');
+        if (frame.isNativeMethod()) {
+            out.append("Native Method");
+        } else if (frame.getFileName() == null) {
+            out.append("Unknown Source");
+        } else {
+            HtmlEscapes.escape(frame.getFileName(), out);
+            if (frame.getLineNumber() >= 0) {
+                out.append(':').append(frame.getLineNumber());
+            }
+        }
+        out.append(')');
+        if (highlight) {
+            out.append(SPAN_END);
+        }
+        out.append(LINE_END);
+    }
+
+    /**
+     * @return 命中的前缀下标，未命中返回-1
+     */
+    private static int matches(String className, String[] prefixes) {
+        for (int i = 0; i < prefixes.length; i++) {
+            if (className.startsWith(prefixes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
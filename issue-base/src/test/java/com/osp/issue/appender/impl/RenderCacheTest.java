@@ -0,0 +1,129 @@
+package com.osp.issue.appender.impl;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.dto.ThrowableSnapshot;
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.util.StackTraceRenderer;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 渲染结果缓存：命中时输出与直接渲染一致、消息不参与缓存、指纹冲突按未命中处理、按条数与字符数淘汰
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 16:20
+ **/
+public class RenderCacheTest {
+
+    private static final AtomicInteger NAMES = new AtomicInteger();
+    private static final StackTraceElement APP = new StackTraceElement("com.osp.FooService", "bar", "FooService.java", 42);
+    private static final StackTraceElement OTHER = new StackTraceElement("com.osp.BarService", "foo", "BarService.java", 7);
+
+    private final String name = "renderCacheTest" + NAMES.incrementAndGet();
+
+    private RenderCache cache(int maxEntries, long maxChars) {
+        return new RenderCache(name, StackTraceRenderer.defaults(), maxEntries, maxChars);
+    }
+
+    private long counter(String suffix) {
+        return AlarmMetrics.getInstance().counter("appender." + name + ".renderCache." + suffix).sum();
+    }
+
+    private static BaseAlarmDto alarm(long fingerprint, String message, StackTraceElement... frames) {
+        IllegalStateException exception = new IllegalStateException(message, new IllegalArgumentException("cause"));
+        exception.setStackTrace(frames);
+        exception.getCause().setStackTrace(frames);
+        BaseAlarmDto dto = new BaseAlarmDto();
+        dto.setException(ThrowableSnapshot.of(exception, 64, 8));
+        dto.setFingerprint(fingerprint);
+        return dto;
+    }
+
+    private static String direct(BaseAlarmDto dto) {
+        StringBuilder out = new StringBuilder();
+        StackTraceRenderer.defaults().render(dto.getException(), out);
+        return out.toString();
+    }
+
+    private static String cached(RenderCache cache, BaseAlarmDto dto) {
+        StringBuilder out = new StringBuilder();
+        cache.writeStackTrace(dto, out);
+        return out.toString();
+    }
+
+    @Test
+    public void hitRendersSameAsDirectWithFreshMessage() {
+        RenderCache cache = cache(16, 1 << 20);
+        BaseAlarmDto first = alarm(1, "单号1", APP);
+        BaseAlarmDto second = alarm(1, "单号2", APP);
+        assertEquals(direct(first), cached(cache, first));
+        assertEquals(direct(second), cached(cache, second));
+        assertEquals(1, counter("stack.hits"));
+        assertEquals(1, counter("stack.misses"));
+    }
+
+    @Test
+    public void fingerprintCollisionIsMiss() {
+        RenderCache cache = cache(16, 1 << 20);
+        cached(cache, alarm(1, "x", APP));
+        BaseAlarmDto other = alarm(1, "x", OTHER);
+        assertEquals(direct(other), cached(cache, other));
+        assertEquals(0, counter("stack.hits"));
+        assertEquals(2, counter("stack.misses"));
+    }
+
+    @Test
+    public void extraIsReusedOnlyWhenEqual() {
+        RenderCache cache = cache(16, 1 << 20);
+        BaseAlarmDto dto = alarm(1, "x", APP);
+        dto.setExtra("参数：<1>");
+        StringBuilder out = new StringBuilder();
+        cache.writeExtra(dto, out);
+        cache.writeExtra(dto, out);
+        dto.setExtra("参数：<2>");
+        cache.writeExtra(dto, out);
+        assertEquals("参数：&lt;1&gt;参数：&lt;1&gt;参数：&lt;2&gt;", out.toString());
+        assertEquals(1, counter("extra.hits"));
+        assertEquals(2, counter("extra.misses"));
+        // 参数与堆栈共用一个条目
+        cached(cache, dto);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedByCount() {
+        RenderCache cache = cache(2, 1 << 20);
+        cached(cache, alarm(1, "x", APP));
+        cached(cache, alarm(2, "x", APP));
+        cached(cache, alarm(1, "x", APP));
+        cached(cache, alarm(3, "x", APP));
+        assertEquals(2, cache.size());
+        assertEquals(1, counter("evictions"));
+        cached(cache, alarm(1, "x", APP));
+        assertEquals("最近使用的1应保留", 2, counter("stack.hits"));
+    }
+
+    @Test
+    public void evictsByCharsAndSkipsOversizedEntries() {
+        RenderCache probe = cache(16, 1 << 20);
+        cached(probe, alarm(1, "x", APP));
+        long entryChars = probe.getChars();
+        assertTrue(entryChars > 0);
+
+        RenderCache cache = cache(16, entryChars * 2);
+        cached(cache, alarm(11, "x", APP));
+        cached(cache, alarm(12, "x", APP));
+        cached(cache, alarm(13, "x", APP));
+        assertEquals(2, cache.size());
+        assertTrue(cache.getChars() <= entryChars * 2);
+
+        RenderCache tiny = cache(16, entryChars - 1);
+        BaseAlarmDto dto = alarm(1, "x", APP);
+        assertEquals(direct(dto), cached(tiny, dto));
+        assertEquals(0, tiny.size());
+    }
+}
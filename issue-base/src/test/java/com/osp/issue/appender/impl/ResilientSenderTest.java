@@ -0,0 +1,72 @@
+package com.osp.issue.appender.impl;
+
+import com.osp.issue.metrics.AlarmMetrics;
+import com.osp.issue.util.ExchangeClient;
+import com.osp.issue.util.PluginConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 邮件发送容错：发送失败时重试、熔断打开后直接进入死信、死信缓冲有界、关闭时丢弃未发出的死信。
+ * 邮件服务指向本机不可用的端口，每次发送都会失败
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 17:10
+ **/
+public class ResilientSenderTest {
+
+    private static final String NAME = "resilientSenderTest";
+
+    private ExchangeClient client;
+    private ResilientSender sender;
+
+    @Before
+    public void setUp() {
+        client = new ExchangeClient.ExchangeClientBuilder().url("http://127.0.0.1:1/ews/Exchange.asmx")
+            .username("test@osp.com").password("").timeout(1000).recipientTo("test@osp.com").build();
+        Map<String, Object> config = new HashMap<>();
+        config.put("breakerFailures", 2);
+        config.put("breakerOpenTime", 60_000);
+        config.put("retries", 1);
+        config.put("retryBackoff", 1);
+        config.put("deadLetterSize", 2);
+        sender = new ResilientSender(client, new PluginConfig(NAME, config));
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+    }
+
+    private static long counter(String name) {
+        return AlarmMetrics.getInstance().counter("appender." + NAME + "." + name).sum();
+    }
+
+    @Test
+    public void failedMailsGoToBoundedDeadLetters() {
+        long retried = counter("retried");
+        long shortCircuited = counter("shortCircuited");
+        long dropped = counter("deadLetterDropped");
+
+        assertFalse("重试一次后仍失败，熔断器打开", sender.send("标题1", "正文1"));
+        assertEquals(1, counter("retried") - retried);
+        assertEquals(1, sender.getDeadLetterCount());
+
+        assertFalse(sender.send("标题2", "正文2"));
+        assertFalse(sender.send("标题3", "正文3"));
+        assertEquals("熔断期间不再请求邮件服务", 2, counter("shortCircuited") - shortCircuited);
+        assertEquals("缓冲满时淘汰最旧的死信", 2, sender.getDeadLetterCount());
+        assertEquals(1, counter("deadLetterDropped") - dropped);
+
+        sender.close(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+        assertEquals("熔断未恢复，关闭时丢弃剩余死信", 3, counter("deadLetterDropped") - dropped);
+    }
+}
@@ -0,0 +1,241 @@
+package com.osp.issue.dto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 报警二进制编码：往返一致、读取旧版本记录与拒绝损坏的记录
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 11:10
+ **/
+public class AlarmRecordCodecTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2019, 8, 6, 11, 10, 30, 123456789);
+    private static final StackTraceElement FRAME = new StackTraceElement("com.osp.Foo", "bar", "Foo.java", 42);
+    private static final StackTraceElement NATIVE_FRAME = new StackTraceElement("com.osp.Foo", "baz", null, -2);
+
+    private static BaseAlarmDto sample() {
+        BaseAlarmDto baseAlarmDto = new BaseAlarmDto("worker-1");
+        baseAlarmDto.setFingerprint(0x1234_5678_9ABC_DEF0L);
+        baseAlarmDto.setCount(7);
+        baseAlarmDto.setExecutionTime(TIME);
+        baseAlarmDto.setFirstTime(TIME.minusMinutes(1));
+        baseAlarmDto.setLastTime(TIME);
+        baseAlarmDto.setPlace("com.osp.FooService.bar");
+        baseAlarmDto.setErrorMessage("连接超时");
+        baseAlarmDto.setOperator(null);
+        baseAlarmDto.setExtra("参数：[1, \"a\"]");
+        baseAlarmDto.setIp("10.0.0.1");
+        baseAlarmDto.setSeverity(Severity.HIGH);
+        ThrowableSnapshot cause = ThrowableSnapshot.restore("java.io.IOException", null,
+            new StackTraceElement[]{NATIVE_FRAME}, 0, 3, null);
+        baseAlarmDto.setException(ThrowableSnapshot.restore("java.lang.IllegalStateException", "连接超时",
+            new StackTraceElement[]{FRAME, NATIVE_FRAME}, 5, 0, cause));
+        return baseAlarmDto;
+    }
+
+    @Test
+    public void roundTrip() {
+        BaseAlarmDto original = sample();
+        ByteBuffer buffer = ByteBuffer.wrap(AlarmRecordCodec.encode(original));
+        BaseAlarmDto decoded = AlarmRecordCodec.decode(buffer);
+        assertEquals(0, buffer.remaining());
+
+        assertEquals("worker-1", decoded.getThreadName());
+        assertEquals(original.getFingerprint(), decoded.getFingerprint());
+        assertEquals(7, decoded.getCount());
+        assertEquals(TIME, decoded.getExecutionTime());
+        assertEquals(TIME.minusMinutes(1), decoded.getFirstTime());
+        assertEquals(TIME, decoded.getLastTime());
+        assertEquals("com.osp.FooService.bar", decoded.getPlace());
+        assertEquals("连接超时", decoded.getErrorMessage());
+        assertNull(decoded.getOperator());
+        assertEquals("参数：[1, \"a\"]", decoded.getExtra());
+        assertEquals("10.0.0.1", decoded.getIp());
+        assertEquals(Severity.HIGH, decoded.getSeverity());
+        assertSnapshotEquals(original.getException(), decoded.getException());
+    }
+
+    @Test
+    public void roundTripWithNulls() {
+        BaseAlarmDto original = new BaseAlarmDto("worker-2");
+        original.setExecutionTime(null);
+        original.setIp(null);
+        BaseAlarmDto decoded = AlarmRecordCodec.decode(ByteBuffer.wrap(AlarmRecordCodec.encode(original)));
+        assertNull(decoded.getExecutionTime());
+        assertNull(decoded.getFirstTime());
+        assertNull(decoded.getPlace());
+        assertNull(decoded.getExtra());
+        assertNull(decoded.getIp());
+        assertNull(decoded.getSeverity());
+        assertNull(decoded.getException());
+        assertEquals(1, decoded.getCount());
+    }
+
+    @Test
+    public void encodeResolvesDeferredExtra() {
+        BaseAlarmDto original = sample();
+        original.setExtra(null);
+        original.setExtraSupplier(() -> "延迟生成");
+        BaseAlarmDto decoded = AlarmRecordCodec.decode(ByteBuffer.wrap(AlarmRecordCodec.encode(original)));
+        assertEquals("延迟生成", decoded.getExtra());
+    }
+
+    @Test
+    public void encodeWithoutResolvingLeavesDeferredExtra() {
+        BaseAlarmDto original = sample();
+        original.setExtra(null);
+        AtomicBoolean resolved = new AtomicBoolean();
+        original.setExtraSupplier(() -> {
+            resolved.set(true);
+            return "延迟生成";
+        });
+        BaseAlarmDto decoded = AlarmRecordCodec.decode(ByteBuffer.wrap(AlarmRecordCodec.encode(original, false)));
+        assertFalse(resolved.get());
+        assertTrue(decoded.getExtra().contains("未采集"));
+        // 原报警仍可在分发线程上生成
+        assertEquals("延迟生成", original.getExtra());
+    }
+
+    @Test
+    public void encodeWithoutResolvingKeepsResolvedExtra() {
+        BaseAlarmDto decoded = AlarmRecordCodec.decode(ByteBuffer.wrap(AlarmRecordCodec.encode(sample(), false)));
+        assertEquals("参数：[1, \"a\"]", decoded.getExtra());
+    }
+
+    @Test
+    public void readsVersion2WithoutSeverity() throws IOException {
+        BaseAlarmDto original = sample();
+        BaseAlarmDto decoded = AlarmRecordCodec.decode(ByteBuffer.wrap(legacy(original, 2)));
+        assertNull(decoded.getSeverity());
+        assertEquals(original.getPlace(), decoded.getPlace());
+        assertEquals(original.getExtra(), decoded.getExtra());
+        assertSnapshotEquals(original.getException(), decoded.getException());
+    }
+
+    @Test
+    public void readsVersion1WithoutCommonFrames() throws IOException {
+        BaseAlarmDto original = sample();
+        BaseAlarmDto decoded = AlarmRecordCodec.decode(ByteBuffer.wrap(legacy(original, 1)));
+        assertNull(decoded.getSeverity());
+        assertEquals(original.getErrorMessage(), decoded.getErrorMessage());
+        ThrowableSnapshot snapshot = decoded.getException();
+        assertEquals("java.lang.IllegalStateException", snapshot.getClassName());
+        assertEquals(5, snapshot.getOmittedFrames());
+        assertArrayEquals(new StackTraceElement[]{FRAME, NATIVE_FRAME}, snapshot.getStackTrace());
+        assertEquals("java.io.IOException", snapshot.getCause().getClassName());
+        // 版本1不记录折叠的栈帧数
+        assertEquals(0, snapshot.getCause().getCommonFrames());
+        assertNull(snapshot.getCause().getCause());
+    }
+
+    @Test
+    public void rejectsUnknownVersion() {
+        byte[] bytes = AlarmRecordCodec.encode(sample());
+        bytes[0] = 9;
+        try {
+            AlarmRecordCodec.decode(ByteBuffer.wrap(bytes));
+            fail("应拒绝未知版本");
+        } catch (IllegalArgumentException e) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void rejectsCorruptLength() {
+        byte[] bytes = AlarmRecordCodec.encode(sample());
+        // 线程名长度位于版本、指纹、次数与三个时间之后
+        int offset = 1 + 8 + 8 + 12 * 3;
+        ByteBuffer.wrap(bytes).putInt(offset, Integer.MAX_VALUE);
+        try {
+            AlarmRecordCodec.decode(ByteBuffer.wrap(bytes));
+            fail("应拒绝损坏的长度");
+        } catch (IllegalArgumentException e) {
+            // 预期
+        }
+    }
+
+    /**
+     * 按旧版本布局编码：版本2没有级别字节，版本1的异常快照另外没有折叠栈帧数
+     */
+    private static byte[] legacy(BaseAlarmDto baseAlarmDto, int version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(version);
+            out.writeLong(baseAlarmDto.getFingerprint());
+            out.writeLong(baseAlarmDto.getCount());
+            writeTime(out, baseAlarmDto.getExecutionTime());
+            writeTime(out, baseAlarmDto.getFirstTime());
+            writeTime(out, baseAlarmDto.getLastTime());
+            writeString(out, baseAlarmDto.getThreadName());
+            writeString(out, baseAlarmDto.getPlace());
+            writeString(out, baseAlarmDto.getErrorMessage());
+            writeString(out, baseAlarmDto.getOperator());
+            writeString(out, baseAlarmDto.getExtra());
+            writeString(out, baseAlarmDto.getIp());
+            for (ThrowableSnapshot current = baseAlarmDto.getException(); current != null; current = current.getCause()) {
+                out.writeBoolean(true);
+                writeString(out, current.getClassName());
+                writeString(out, current.getMessage());
+                out.writeInt(current.getOmittedFrames());
+                if (version > 1) {
+                    out.writeInt(current.getCommonFrames());
+                }
+                out.writeInt(current.getStackTrace().length);
+                for (StackTraceElement frame : current.getStackTrace()) {
+                    writeString(out, frame.getClassName());
+                    writeString(out, frame.getMethodName());
+                    writeString(out, frame.getFileName());
+                    out.writeInt(frame.getLineNumber());
+                }
+            }
+            out.writeBoolean(false);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void assertSnapshotEquals(ThrowableSnapshot expected, ThrowableSnapshot actual) {
+        while (expected != null) {
+            assertEquals(expected.getClassName(), actual.getClassName());
+            assertEquals(expected.getMessage(), actual.getMessage());
+            assertEquals(expected.getOmittedFrames(), actual.getOmittedFrames());
+            assertEquals(expected.getCommonFrames(), actual.getCommonFrames());
+            assertEquals(Arrays.asList(expected.getStackTrace()), Arrays.asList(actual.getStackTrace()));
+            expected = expected.getCause();
+            actual = actual.getCause();
+        }
+        assertNull(actual);
+    }
+}
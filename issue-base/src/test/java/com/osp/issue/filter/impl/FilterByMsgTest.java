@@ -0,0 +1,75 @@
+package com.osp.issue.filter.impl;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按错误消息、异常类型、地点、操作人过滤，任一规则命中即过滤
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 15:30
+ **/
+public class FilterByMsgTest {
+
+    private static FilterByMsg filter(String key, Object value) {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+        map.put(key, value);
+        FilterByMsg filter = new FilterByMsg();
+        filter.init(map);
+        return filter;
+    }
+
+    @Test
+    public void filtersByMessage() {
+        FilterByMsg filter = filter("rule", "连接超时.*、.*Broken pipe");
+        BaseAlarmDto dto = new BaseAlarmDto(new IllegalStateException("连接超时：10.0.0.1"));
+        assertTrue(filter.filter(dto));
+        dto.setErrorMessage("java.io.IOException: Broken pipe");
+        assertTrue(filter.filter(dto));
+        dto.setErrorMessage("余额不足");
+        assertFalse(filter.filter(dto));
+    }
+
+    @Test
+    public void nullMessageMatchesAsEmpty() {
+        BaseAlarmDto dto = new BaseAlarmDto();
+        dto.setErrorMessage(null);
+        assertTrue(filter("rule", ".*").filter(dto));
+        assertFalse(filter("rule", "连接超时").filter(dto));
+    }
+
+    @Test
+    public void filtersByExactExceptionType() {
+        FilterByMsg filter = filter("exceptions", "java.lang.IllegalStateException、 java.io.IOException ");
+        assertTrue(filter.filter(new BaseAlarmDto(new IllegalStateException("x"))));
+        assertTrue("前后空白应忽略", filter.filter(new BaseAlarmDto(new java.io.IOException("x"))));
+        assertFalse("子类不算命中", filter.filter(new BaseAlarmDto(new java.io.FileNotFoundException("x"))));
+    }
+
+    @Test
+    public void filtersByOperatorAndPlace() {
+        BaseAlarmDto dto = new BaseAlarmDto(new IllegalStateException("x"), "admin", null, "com.osp.FooService.bar");
+        assertTrue(filter("operators", "guest、admin").filter(dto));
+        assertFalse(filter("operators", "adm").filter(dto));
+        assertTrue(filter("places", "com\\.osp\\.FooService\\..*").filter(dto));
+        assertFalse(filter("places", "com\\.osp\\.BarService\\..*").filter(dto));
+    }
+
+    @Test
+    public void noRulesFilterNothing() {
+        FilterByMsg filter = new FilterByMsg();
+        filter.init(new LinkedHashMap<String, Object>());
+        assertFalse(filter.filter(new BaseAlarmDto(new IllegalStateException("x"), "admin", null, "p")));
+        assertFalse(filter.isPreFilter());
+    }
+
+    @Test
+    public void preFilterIsConfigurable() {
+        assertTrue(filter("preFilter", true).isPreFilter());
+    }
+}
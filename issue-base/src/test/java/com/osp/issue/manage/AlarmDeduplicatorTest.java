@@ -0,0 +1,169 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 指纹去重：窗口内合并、到期聚合，以及清理与生产者并发时计数不丢、窗口数不漂移
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 10:30
+ **/
+public class AlarmDeduplicatorTest {
+
+    private static BaseAlarmDto alarm(long fingerprint) {
+        BaseAlarmDto baseAlarmDto = new BaseAlarmDto();
+        baseAlarmDto.setFingerprint(fingerprint);
+        baseAlarmDto.setErrorMessage("boom");
+        return baseAlarmDto;
+    }
+
+    @Test
+    public void foldsWithinWindowAndEmitsAggregate() {
+        AlarmDeduplicator deduplicator = new AlarmDeduplicator(1000, 16);
+        assertTrue(deduplicator.accept(alarm(1), 0));
+        assertFalse(deduplicator.accept(alarm(1), 100));
+        assertFalse(deduplicator.accept(alarm(1), 200));
+        assertTrue(deduplicator.accept(alarm(2), 300));
+        assertEquals(2, deduplicator.size());
+
+        List<BaseAlarmDto> emitted = new ArrayList<>();
+        deduplicator.sweep(999, emitted::add);
+        assertTrue(emitted.isEmpty());
+
+        deduplicator.sweep(1000, emitted::add);
+        assertEquals(1, emitted.size());
+        assertEquals(3, emitted.get(0).getCount());
+        assertEquals("boom", emitted.get(0).getErrorMessage());
+        assertEquals(1, deduplicator.size());
+
+        // 只出现一次的窗口到期时不输出聚合报警
+        deduplicator.sweep(1300, emitted::add);
+        assertEquals(1, emitted.size());
+        assertEquals(0, deduplicator.size());
+
+        // 窗口关闭后同指纹重新开窗
+        assertTrue(deduplicator.accept(alarm(1), 1400));
+    }
+
+    @Test
+    public void passesThroughWhenFull() {
+        AlarmDeduplicator deduplicator = new AlarmDeduplicator(1000, 2);
+        assertTrue(deduplicator.accept(alarm(1), 0));
+        assertTrue(deduplicator.accept(alarm(2), 0));
+        assertTrue(deduplicator.accept(alarm(3), 0));
+        assertTrue(deduplicator.accept(alarm(3), 0));
+        assertEquals(2, deduplicator.size());
+    }
+
+    @Test
+    public void aggregateDoesNotResolveDeferredExtra() {
+        AlarmDeduplicator deduplicator = new AlarmDeduplicator(1000, 16);
+        BaseAlarmDto first = alarm(1);
+        AtomicBoolean resolved = new AtomicBoolean();
+        first.setExtraSupplier(() -> {
+            resolved.set(true);
+            return "args";
+        });
+        deduplicator.accept(first, 0);
+        deduplicator.accept(alarm(1), 1);
+        List<BaseAlarmDto> emitted = new ArrayList<>();
+        deduplicator.sweep(1000, emitted::add);
+        assertEquals(1, emitted.size());
+        assertFalse(resolved.get());
+        // 未生成的额外信息以说明代替，不是静默为空
+        assertTrue(emitted.get(0).getExtra().contains("首条报警"));
+    }
+
+    @Test
+    public void aggregateKeepsResolvedExtra() {
+        AlarmDeduplicator deduplicator = new AlarmDeduplicator(1000, 16);
+        BaseAlarmDto first = alarm(1);
+        first.setExtra("operator=42");
+        deduplicator.accept(first, 0);
+        deduplicator.accept(alarm(1), 1);
+        List<BaseAlarmDto> emitted = new ArrayList<>();
+        deduplicator.sweep(1000, emitted::add);
+        assertEquals("operator=42", emitted.get(0).getExtra());
+    }
+
+    /**
+     * 清理线程不断推进时钟并关闭窗口，生产者同时向少量指纹写入：
+     * 每次accept要么开窗（发送原报警）要么计入某个窗口，最终所有次数都应出现在原报警或聚合报警中
+     */
+    @Test
+    public void sweepRacingAcceptKeepsCounts() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 100000;
+        final int fingerprints = 4;
+        final AlarmDeduplicator deduplicator = new AlarmDeduplicator(1, 1024);
+        final AtomicLong clock = new AtomicLong();
+        final AtomicLong opened = new AtomicLong();
+        final long[] aggregated = new long[2];
+        final AtomicBoolean producing = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        final BaseAlarmDto[] alarms = new BaseAlarmDto[fingerprints];
+        for (int i = 0; i < fingerprints; i++) {
+            alarms[i] = alarm(i);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int offset = p;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    if (deduplicator.accept(alarms[(i + offset) % fingerprints], clock.get())) {
+                        opened.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        Thread sweeper = new Thread(() -> {
+            await(start);
+            while (producing.get()) {
+                deduplicator.sweep(clock.incrementAndGet(), alarm -> {
+                    aggregated[0]++;
+                    aggregated[1] += alarm.getCount();
+                });
+            }
+        });
+        threads.forEach(Thread::start);
+        sweeper.start();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(30000);
+            assertFalse("线程未在限时内结束", thread.isAlive());
+        }
+        producing.set(false);
+        sweeper.join(30000);
+        assertFalse("清理线程未在限时内结束", sweeper.isAlive());
+
+        deduplicator.sweep(Long.MAX_VALUE, alarm -> {
+            aggregated[0]++;
+            aggregated[1] += alarm.getCount();
+        });
+        assertEquals(0, deduplicator.size());
+        // 只出现一次的窗口不输出聚合报警，其一次已由开窗时发送的原报警计入
+        long singles = opened.get() - aggregated[0];
+        assertEquals((long) producers * perProducer, singles + aggregated[1]);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
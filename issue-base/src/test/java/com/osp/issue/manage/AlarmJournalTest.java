@@ -0,0 +1,181 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.AlarmRecordCodec;
+import com.osp.issue.dto.BaseAlarmDto;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 报警落盘日志：按写入顺序回放、重启后从已读位置继续、写入中途崩溃留下的残缺记录被忽略
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 11:40
+ **/
+public class AlarmJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static BaseAlarmDto alarm(String place) {
+        BaseAlarmDto baseAlarmDto = new BaseAlarmDto();
+        baseAlarmDto.setPlace(place);
+        baseAlarmDto.setErrorMessage("boom");
+        return baseAlarmDto;
+    }
+
+    private static List<String> replayAll(AlarmJournal journal) {
+        List<String> places = new ArrayList<>();
+        journal.replay(Integer.MAX_VALUE, alarm -> places.add(alarm.getPlace()));
+        return places;
+    }
+
+    @Test
+    public void replaysInWriteOrder() throws IOException {
+        AlarmJournal journal = new AlarmJournal(folder.getRoot().toPath(), SEGMENT_SIZE, 4);
+        assertTrue(journal.isEmpty());
+        assertTrue(journal.offer(alarm("p0")));
+        assertTrue(journal.offer(alarm("p1")));
+        assertTrue(journal.append(alarm("p2")));
+        assertFalse(journal.isEmpty());
+
+        assertEquals(Arrays.asList("p0", "p1", "p2"), replayAll(journal));
+        assertTrue(journal.isEmpty());
+        assertTrue(segments().isEmpty());
+    }
+
+    @Test
+    public void resumesFromReadOffsetAfterRestart() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        AlarmJournal journal = new AlarmJournal(directory, SEGMENT_SIZE, 4);
+        for (int i = 0; i < 3; i++) {
+            journal.append(alarm("p" + i));
+        }
+        List<String> places = new ArrayList<>();
+        assertEquals(1, journal.replay(1, alarm -> places.add(alarm.getPlace())));
+        journal.close();
+
+        AlarmJournal restarted = new AlarmJournal(directory, SEGMENT_SIZE, 4);
+        assertEquals(Arrays.asList("p1", "p2"), replayAll(restarted));
+        // 新写入的段排在遗留段之后
+        restarted.append(alarm("p3"));
+        assertEquals(Arrays.asList("p3"), replayAll(restarted));
+    }
+
+    @Test
+    public void ignoresRecordWithoutLength() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        int end = writeTwoAndClose(directory);
+        // 崩溃于写入长度之前：内容与校验和已写入，长度仍为0
+        byte[] body = AlarmRecordCodec.encode(alarm("torn"));
+        writeAt(single(segments()), end + 8, body);
+        writeAt(single(segments()), end + 4, ByteBuffer.allocate(4).putInt(0x12345678).array());
+
+        AlarmJournal restarted = new AlarmJournal(directory, SEGMENT_SIZE, 4);
+        assertEquals(Arrays.asList("p0", "p1"), replayAll(restarted));
+        assertTrue(restarted.isEmpty());
+    }
+
+    @Test
+    public void dropsRecordWithTornBody() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        int end = writeTwoAndClose(directory);
+        // 长度已落盘而内容只写了一半（页面乱序刷盘），校验和不符
+        byte[] body = AlarmRecordCodec.encode(alarm("torn"));
+        Path segment = single(segments());
+        writeAt(segment, end, ByteBuffer.allocate(8).putInt(body.length).putInt(0).array());
+        writeAt(segment, end + 8, Arrays.copyOf(body, body.length / 2));
+
+        AlarmJournal restarted = new AlarmJournal(directory, SEGMENT_SIZE, 4);
+        assertEquals(Arrays.asList("p0", "p1"), replayAll(restarted));
+        assertTrue(restarted.isEmpty());
+    }
+
+    @Test
+    public void offerDoesNotSerializeDeferredExtra() throws IOException {
+        AlarmJournal journal = new AlarmJournal(folder.getRoot().toPath(), SEGMENT_SIZE, 4);
+        AtomicBoolean resolved = new AtomicBoolean();
+        BaseAlarmDto overflowed = alarm("p0");
+        overflowed.setExtraSupplier(() -> {
+            resolved.set(true);
+            return "args";
+        });
+        BaseAlarmDto stopping = alarm("p1");
+        stopping.setExtraSupplier(() -> "args");
+        assertTrue(journal.offer(overflowed));
+        assertTrue(journal.append(stopping));
+        // 溢出在业务线程上写入，不生成；停机写入时生成
+        assertFalse(resolved.get());
+        List<String> extras = new ArrayList<>();
+        journal.replay(Integer.MAX_VALUE, alarm -> extras.add(alarm.getExtra()));
+        assertTrue(extras.get(0).contains("未采集"));
+        assertEquals("args", extras.get(1));
+    }
+
+    @Test
+    public void dropsOldestSegmentsBeyondLimit() throws IOException {
+        // 每段只容纳一条记录
+        int record = 8 + AlarmRecordCodec.encode(alarm("p0")).length;
+        AlarmJournal journal = new AlarmJournal(folder.getRoot().toPath(), 8 + record, 2);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(journal.append(alarm("p" + i)));
+        }
+        assertEquals(Arrays.asList("p2", "p3"), replayAll(journal));
+
+        // 超过一段容量的报警直接放弃
+        assertFalse(journal.append(alarm("oversized-place")));
+    }
+
+    /**
+     * 写入两条记录并刷盘
+     *
+     * @return 第三条记录的起始位置
+     */
+    private int writeTwoAndClose(Path directory) throws IOException {
+        AlarmJournal journal = new AlarmJournal(directory, SEGMENT_SIZE, 4);
+        int end = 8;
+        for (int i = 0; i < 2; i++) {
+            BaseAlarmDto baseAlarmDto = alarm("p" + i);
+            end += 8 + AlarmRecordCodec.encode(baseAlarmDto).length;
+            journal.append(baseAlarmDto);
+        }
+        journal.close();
+        return end;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> stream = Files.list(folder.getRoot().toPath())) {
+            return stream.filter(path -> path.toString().endsWith(".seg")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Path single(List<Path> paths) {
+        assertEquals(1, paths.size());
+        return paths.get(0);
+    }
+
+    private static void writeAt(Path path, int position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.osp.issue.manage;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 流水线退役：等正在使用的分发线程退出后才停止，退役后拒绝新的使用方
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 17:40
+ **/
+public class AlarmPipelineTest {
+
+    private static AlarmPipeline pipeline() {
+        return new AlarmPipeline(Collections.<AppenderWorker>emptyList(), Collections.emptyList());
+    }
+
+    @Test
+    public void retiredPipelineRejectsNewUsers() {
+        AlarmPipeline pipeline = pipeline();
+        assertTrue(pipeline.enter());
+        pipeline.exit();
+        pipeline.retire(System.nanoTime());
+        assertFalse(pipeline.enter());
+    }
+
+    @Test
+    public void retireWaitsForInFlightDispatch() throws InterruptedException {
+        AlarmPipeline pipeline = pipeline();
+        assertTrue(pipeline.enter());
+        AtomicBoolean exited = new AtomicBoolean();
+        AtomicBoolean retiredAfterExit = new AtomicBoolean();
+        CountDownLatch retired = new CountDownLatch(1);
+        Thread retirer = new Thread(() -> {
+            pipeline.retire(System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+            retiredAfterExit.set(exited.get());
+            retired.countDown();
+        });
+        retirer.start();
+        assertFalse("分发未结束时不应完成退役", retired.await(100, TimeUnit.MILLISECONDS));
+        assertFalse(pipeline.enter());
+        exited.set(true);
+        pipeline.exit();
+        assertTrue(retired.await(1, TimeUnit.SECONDS));
+        assertTrue(retiredAfterExit.get());
+    }
+
+    @Test
+    public void retireGivesUpAtDeadline() {
+        AlarmPipeline pipeline = pipeline();
+        assertTrue(pipeline.enter());
+        long start = System.nanoTime();
+        pipeline.retire(start + TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        pipeline.exit();
+    }
+}
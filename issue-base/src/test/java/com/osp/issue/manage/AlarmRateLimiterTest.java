@@ -0,0 +1,93 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * appender限流：两级令牌桶、被appender级拒绝时归还指纹令牌、携带与归还限流次数
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 10:55
+ **/
+public class AlarmRateLimiterTest {
+
+    private static BaseAlarmDto alarm(long fingerprint) {
+        BaseAlarmDto baseAlarmDto = new BaseAlarmDto();
+        baseAlarmDto.setFingerprint(fingerprint);
+        return baseAlarmDto;
+    }
+
+    private static AlarmRateLimiter limiter(Object rateLimit, Object fingerprintRateLimit) {
+        Map<String, Object> config = new HashMap<>();
+        if (rateLimit != null) {
+            config.put("rateLimit", rateLimit);
+            config.put("rateBurst", 1);
+        }
+        if (fingerprintRateLimit != null) {
+            config.put("fingerprintRateLimit", fingerprintRateLimit);
+        }
+        return AlarmRateLimiter.of("test", config);
+    }
+
+    @Test
+    public void notConfigured() {
+        assertNull(AlarmRateLimiter.of("test", new HashMap<>()));
+    }
+
+    @Test
+    public void carriesSuppressedCountOnNextAdmitted() throws InterruptedException {
+        // 每100ms一个令牌
+        AlarmRateLimiter limiter = limiter(600, null);
+        BaseAlarmDto first = alarm(1);
+        assertSame(first, limiter.acquire(first));
+        assertNull(limiter.acquire(alarm(1)));
+        assertNull(limiter.acquire(alarm(2)));
+        TimeUnit.MILLISECONDS.sleep(150);
+
+        BaseAlarmDto next = alarm(1);
+        BaseAlarmDto admitted = limiter.acquire(next);
+        assertNotNull(admitted);
+        assertEquals(2, admitted.getSuppressed());
+        assertNotNull(admitted.getSuppressedSince());
+        // 携带次数的是副本，原报警还要分发给其他appender
+        assertEquals(0, next.getSuppressed());
+    }
+
+    @Test
+    public void givesBackCountWhenNotEnqueued() throws InterruptedException {
+        AlarmRateLimiter limiter = limiter(600, null);
+        limiter.acquire(alarm(1));
+        assertNull(limiter.acquire(alarm(1)));
+        TimeUnit.MILLISECONDS.sleep(150);
+        BaseAlarmDto admitted = limiter.acquire(alarm(1));
+        assertEquals(1, admitted.getSuppressed());
+
+        // 入队失败，次数由下一条放行的报警重新携带
+        limiter.giveBack(admitted);
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertEquals(1, limiter.acquire(alarm(1)).getSuppressed());
+    }
+
+    @Test
+    public void refundsFingerprintTokenWhenGlobalRejects() throws InterruptedException {
+        // appender级每100ms一个令牌，指纹级每10s一个令牌
+        AlarmRateLimiter limiter = limiter(600, 6);
+        assertNotNull(limiter.acquire(alarm(1)));
+        // 指纹2取到令牌后被appender级拒绝，令牌应还回
+        assertNull(limiter.acquire(alarm(2)));
+        TimeUnit.MILLISECONDS.sleep(150);
+        BaseAlarmDto admitted = limiter.acquire(alarm(2));
+        assertNotNull(admitted);
+        // 限流次数只记在appender级
+        assertEquals(1, admitted.getSuppressed());
+    }
+}
@@ -0,0 +1,158 @@
+package com.osp.issue.manage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 无锁环形队列：空、满、绕圈与多生产者多消费者
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 10:10
+ **/
+public class AlarmRingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(2, new AlarmRingBuffer<Integer>(1).capacity());
+        assertEquals(4, new AlarmRingBuffer<Integer>(3).capacity());
+        assertEquals(4, new AlarmRingBuffer<Integer>(4).capacity());
+        assertEquals(8, new AlarmRingBuffer<Integer>(5).capacity());
+    }
+
+    @Test
+    public void emptyBufferPollsNull() {
+        AlarmRingBuffer<Integer> buffer = new AlarmRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        assertTrue(buffer.offer(1));
+        assertEquals(Integer.valueOf(1), buffer.poll());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void fullBufferRejectsUntilPolled() {
+        AlarmRingBuffer<Integer> buffer = new AlarmRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertEquals(4, buffer.size());
+        assertFalse(buffer.offer(4));
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void wrapsAroundInOrder() {
+        AlarmRingBuffer<Integer> buffer = new AlarmRingBuffer<>(4);
+        int next = 0;
+        int expected = 0;
+        // 每轮入3出2，游标多次越过容量边界
+        for (int round = 0; round < 100; round++) {
+            while (buffer.size() < buffer.capacity() && next < (round + 1) * 3) {
+                assertTrue(buffer.offer(next++));
+            }
+            for (int i = 0; i < 2; i++) {
+                Integer element = buffer.poll();
+                if (element == null) {
+                    break;
+                }
+                assertEquals(Integer.valueOf(expected++), element);
+            }
+        }
+        List<Integer> rest = new ArrayList<>();
+        buffer.drainTo(rest, Integer.MAX_VALUE);
+        for (Integer element : rest) {
+            assertEquals(Integer.valueOf(expected++), element);
+        }
+        assertEquals(next, expected);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void drainToRespectsMax() {
+        AlarmRingBuffer<Integer> buffer = new AlarmRingBuffer<>(8);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained, 4));
+        assertEquals(4, drained.size());
+        assertEquals(2, buffer.size());
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        // 清空后槽位序号仍正确，可以继续写满
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(8));
+    }
+
+    @Test
+    public void concurrentProducersAndConsumersLoseNothing() throws InterruptedException {
+        final int producers = 4;
+        final int consumers = 2;
+        final int perProducer = 50000;
+        final int total = producers * perProducer;
+        final AlarmRingBuffer<Integer> buffer = new AlarmRingBuffer<>(64);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        final AtomicLong consumed = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(new Thread(() -> {
+                await(start);
+                while (consumed.get() < total) {
+                    Integer element = buffer.poll();
+                    if (element == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    seen.incrementAndGet(element);
+                    consumed.incrementAndGet();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(30000);
+            assertFalse("线程未在限时内结束", thread.isAlive());
+        }
+        for (int i = 0; i < total; i++) {
+            assertEquals("元素" + i + "应恰好出队一次", 1, seen.get(i));
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 对数抽样：只放行1、base、base^2…次并携带真实次数，周期到期重新计数，计数表满时不跟踪
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 16:40
+ **/
+public class LogarithmicSamplerTest {
+
+    private static BaseAlarmDto alarm(long fingerprint) {
+        BaseAlarmDto dto = new BaseAlarmDto();
+        dto.setFingerprint(fingerprint);
+        return dto;
+    }
+
+    @Test
+    public void forwardsPowersOfBaseWithRealCount() {
+        LogarithmicSampler sampler = new LogarithmicSampler(10, 60_000, 16);
+        long now = System.currentTimeMillis();
+        List<Long> forwarded = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            BaseAlarmDto dto = alarm(42);
+            if (sampler.sample(dto, now) == LogarithmicSampler.Decision.FORWARD) {
+                forwarded.add(dto.getCount());
+            }
+        }
+        assertEquals(Arrays.asList(1L, 10L, 100L, 1000L), forwarded);
+    }
+
+    @Test
+    public void forwardedRepeatCarriesPeriodTimes() {
+        LogarithmicSampler sampler = new LogarithmicSampler(2, 60_000, 16);
+        long now = System.currentTimeMillis();
+        BaseAlarmDto first = alarm(7);
+        assertSame(LogarithmicSampler.Decision.FORWARD, sampler.sample(first, now));
+        assertNull("周期内首次不改写", first.getFirstTime());
+        BaseAlarmDto second = alarm(7);
+        assertSame(LogarithmicSampler.Decision.FORWARD, sampler.sample(second, now + 5_000));
+        assertEquals(2, second.getCount());
+        assertNotNull(second.getFirstTime());
+        assertTrue(second.getFirstTime().isBefore(second.getLastTime()));
+        assertSame(LogarithmicSampler.Decision.SUPPRESS, sampler.sample(alarm(7), now + 5_000));
+    }
+
+    @Test
+    public void restartsCountingAfterPeriod() {
+        LogarithmicSampler sampler = new LogarithmicSampler(10, 1_000, 16);
+        long now = System.currentTimeMillis();
+        sampler.sample(alarm(7), now);
+        assertSame(LogarithmicSampler.Decision.SUPPRESS, sampler.sample(alarm(7), now));
+        BaseAlarmDto next = alarm(7);
+        assertSame(LogarithmicSampler.Decision.FORWARD, sampler.sample(next, now + 2_000));
+        assertEquals(1, next.getCount());
+        assertSame(LogarithmicSampler.Decision.SUPPRESS, sampler.sample(alarm(7), now + 2_000));
+    }
+
+    @Test
+    public void fullTableLeavesNewFingerprintsUntracked() {
+        LogarithmicSampler sampler = new LogarithmicSampler(10, 1_000, 2);
+        long now = System.currentTimeMillis();
+        sampler.sample(alarm(1), now);
+        sampler.sample(alarm(2), now);
+        assertSame(LogarithmicSampler.Decision.UNTRACKED, sampler.sample(alarm(3), now));
+        assertSame("已跟踪的指纹不受影响", LogarithmicSampler.Decision.SUPPRESS, sampler.sample(alarm(1), now));
+        assertSame("到期槽位可复用", LogarithmicSampler.Decision.FORWARD, sampler.sample(alarm(3), now + 2_000));
+    }
+
+    @Test
+    public void sizeCountsLiveFingerprints() {
+        LogarithmicSampler sampler = new LogarithmicSampler(10, 60_000, 16);
+        long now = System.currentTimeMillis();
+        sampler.sample(alarm(1), now);
+        sampler.sample(alarm(1), now);
+        sampler.sample(alarm(2), now);
+        assertEquals(2, sampler.size());
+    }
+}
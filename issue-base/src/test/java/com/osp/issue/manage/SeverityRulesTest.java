@@ -0,0 +1,92 @@
+package com.osp.issue.manage;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.dto.Severity;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * 报警级别规则：按顺序首条命中、cause链上匹配异常类型、同一规则内条件同时满足、配置错误报错
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 17:30
+ **/
+public class SeverityRulesTest {
+
+    private static Map<String, Object> rule(String level, String key, String value) {
+        Map<String, Object> rule = new LinkedHashMap<>();
+        rule.put("level", level);
+        rule.put(key, value);
+        return rule;
+    }
+
+    private static SeverityRules rules(Map<?, ?>... items) {
+        List<Object> list = new ArrayList<>();
+        for (Map<?, ?> item : items) {
+            list.add(item);
+        }
+        return SeverityRules.of(list, "normal");
+    }
+
+    private static BaseAlarmDto alarm(Throwable throwable, String place) {
+        return new BaseAlarmDto(throwable, null, null, place);
+    }
+
+    @Test
+    public void noRulesUseDefault() {
+        assertSame(Severity.NORMAL, SeverityRules.of(null, "normal").classify(alarm(new IllegalStateException(), "p")));
+        assertSame(Severity.LOW, SeverityRules.of("不是列表", " low ").classify(alarm(new IllegalStateException(), "p")));
+    }
+
+    @Test
+    public void matchesExceptionOnCauseChain() {
+        SeverityRules rules = rules(rule("critical", "exceptions", "java.net.ConnectException、java.sql.SQLException"));
+        assertSame(Severity.CRITICAL, rules.classify(alarm(new SQLException("库不可达"), "p")));
+        assertSame("被包装的异常同样命中", Severity.CRITICAL,
+            rules.classify(alarm(new IllegalStateException("包装", new SQLException("库不可达")), "p")));
+        assertSame(Severity.NORMAL, rules.classify(alarm(new IllegalStateException("其他"), "p")));
+    }
+
+    @Test
+    public void firstMatchingRuleWins() {
+        SeverityRules rules = rules(
+            rule("high", "places", "com\\.osp\\.PayService\\..*"),
+            rule("low", "messages", ".*超时.*"));
+        assertSame(Severity.HIGH, rules.classify(alarm(new IllegalStateException("超时"), "com.osp.PayService.pay")));
+        assertSame(Severity.LOW, rules.classify(alarm(new IllegalStateException("超时"), "com.osp.FooService.bar")));
+        assertSame(Severity.NORMAL, rules.classify(alarm(new IllegalStateException("余额不足"), null)));
+    }
+
+    @Test
+    public void conditionsInOneRuleMustAllMatch() {
+        Map<String, Object> rule = rule("critical", "exceptions", "java.sql.SQLException");
+        rule.put("places", "com\\.osp\\.PayService\\..*");
+        SeverityRules rules = rules(rule);
+        assertSame(Severity.CRITICAL, rules.classify(alarm(new SQLException(), "com.osp.PayService.pay")));
+        assertSame(Severity.NORMAL, rules.classify(alarm(new SQLException(), "com.osp.FooService.bar")));
+        assertSame(Severity.NORMAL, rules.classify(alarm(new IllegalStateException(), "com.osp.PayService.pay")));
+    }
+
+    @Test
+    public void invalidConfigurationIsRejected() {
+        Map<String, Object> withoutLevel = new LinkedHashMap<>();
+        withoutLevel.put("messages", ".*");
+        for (Map<?, ?> invalid : new Map<?, ?>[]{withoutLevel, rule("urgent", "messages", ".*"),
+            rule("high", "messages", "(unclosed")}) {
+            try {
+                rules(invalid);
+                fail("配置无效应报错：" + invalid);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
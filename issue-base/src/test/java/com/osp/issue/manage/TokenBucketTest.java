@@ -0,0 +1,101 @@
+package com.osp.issue.manage;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 令牌桶：突发容量、按间隔补充、归还令牌与限流计数
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 10:50
+ **/
+public class TokenBucketTest {
+
+    /**
+     * 每分钟60个，即每秒一个
+     */
+    private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void allowsBurstThenRefillsPerInterval() {
+        TokenBucket bucket = new TokenBucket(60, 3);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+
+        assertFalse(bucket.tryAcquire(now + INTERVAL - 1));
+        assertTrue(bucket.tryAcquire(now + INTERVAL));
+        assertFalse(bucket.tryAcquire(now + INTERVAL));
+
+        // 长时间空闲后最多恢复到桶容量
+        long later = now + 100 * INTERVAL;
+        assertTrue(bucket.isIdle(later));
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(later));
+        }
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    @Test
+    public void newBucketAdmitsTimeReadBeforeCreation() {
+        long before = System.nanoTime();
+        TokenBucket bucket = new TokenBucket(6, 1);
+        assertTrue(bucket.tryAcquire(before));
+        assertFalse(bucket.tryAcquire(before));
+    }
+
+    @Test
+    public void refundReturnsToken() {
+        TokenBucket bucket = new TokenBucket(60, 1);
+        long now = System.nanoTime();
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        bucket.refund();
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+    }
+
+    @Test
+    public void tracksSuppressedCountAndSince() {
+        TokenBucket bucket = new TokenBucket(60, 1);
+        assertEquals(0, bucket.takeSuppressed());
+        assertEquals(0, bucket.getSuppressedSince());
+
+        bucket.suppress(1000);
+        bucket.suppress(2000);
+        bucket.suppress(3000);
+        assertFalse(bucket.isIdle(System.nanoTime() + 10 * INTERVAL));
+        assertEquals(3, bucket.takeSuppressed());
+        assertEquals(1000, bucket.getSuppressedSince());
+        assertEquals(0, bucket.takeSuppressed());
+
+        // 清零后重新记录起始时间
+        bucket.suppress(5000);
+        assertEquals(1, bucket.takeSuppressed());
+        assertEquals(5000, bucket.getSuppressedSince());
+    }
+
+    @Test
+    public void restoresTakenCount() {
+        TokenBucket bucket = new TokenBucket(60, 1);
+        bucket.suppress(1000);
+        bucket.suppress(2000);
+        assertEquals(2, bucket.takeSuppressed());
+        // 期间又有新的限流
+        bucket.suppress(3000);
+        bucket.restoreSuppressed(2, 1000);
+        assertEquals(3, bucket.takeSuppressed());
+        assertEquals(1000, bucket.getSuppressedSince());
+
+        bucket.restoreSuppressed(4, 6000);
+        assertEquals(4, bucket.takeSuppressed());
+        assertEquals(6000, bucket.getSuppressedSince());
+    }
+}
@@ -0,0 +1,77 @@
+package com.osp.issue.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 耗时直方图：桶上界的相对误差、百分位与清零
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 12:00
+ **/
+public class LatencyHistogramTest {
+
+    private static long nanos(long micros) {
+        return TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+
+    @Test
+    public void emptySnapshotIsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot(false);
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0, snapshot.getMax());
+    }
+
+    @Test
+    public void bucketUpperBoundWithinOneEighth() {
+        for (long micros = 0; micros < 1L << 20; micros = micros < 64 ? micros + 1 : micros * 17 / 16) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(nanos(micros));
+            long bound = histogram.snapshot(false).getMax();
+            assertTrue(micros + "微秒的上界" + bound + "偏小", bound >= micros);
+            assertTrue(micros + "微秒的上界" + bound + "误差超过1/8", bound - micros <= micros / 8);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(nanos(i));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(100, snapshot.getCount());
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+        assertBetween(50, snapshot.getValueAtPercentile(50));
+        assertBetween(99, snapshot.getValueAtPercentile(99));
+        assertBetween(100, snapshot.getMax());
+    }
+
+    @Test
+    public void clampsOutOfRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot(false);
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertTrue(snapshot.getMax() >= (1L << 32));
+    }
+
+    @Test
+    public void resetClearsCounts() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(nanos(10));
+        assertEquals(1, histogram.snapshot(true).getCount());
+        assertEquals(0, histogram.snapshot(false).getCount());
+    }
+
+    private static void assertBetween(long expected, long actual) {
+        assertTrue("期望约" + expected + "，实际" + actual, actual >= expected && actual - expected <= expected / 8);
+    }
+}
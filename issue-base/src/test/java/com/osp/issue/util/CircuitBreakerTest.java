@@ -0,0 +1,71 @@
+package com.osp.issue.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 熔断器：连续失败打开、打开期间拒绝、半开只放行一次探测，探测成功关闭、失败重新打开
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 17:00
+ **/
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.onFailure());
+        assertFalse(breaker.onFailure());
+        assertTrue("第三次失败打开", breaker.onFailure());
+        assertSame(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 60_000);
+        breaker.onFailure();
+        assertFalse("未打开时成功不算恢复", breaker.onSuccess());
+        assertFalse(breaker.onFailure());
+        assertSame(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void halfOpenAllowsSingleProbe() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        breaker.onFailure();
+        assertTrue("打开时长已过，放行探测", breaker.allowRequest());
+        assertSame(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse("探测在途时拒绝", breaker.allowRequest());
+        assertTrue("探测成功即恢复", breaker.onSuccess());
+        assertSame(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedProbeReopens() {
+        CircuitBreaker breaker = new CircuitBreaker(5, 60_000);
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure();
+        }
+        assertFalse(breaker.allowRequest());
+
+        CircuitBreaker probing = new CircuitBreaker(1, 0);
+        probing.onFailure();
+        assertTrue(probing.allowRequest());
+        assertFalse("半开转打开不算新打开", probing.onFailure());
+        assertSame(CircuitBreaker.State.OPEN, probing.getState());
+    }
+
+    @Test
+    public void thresholdIsAtLeastOne() {
+        CircuitBreaker breaker = new CircuitBreaker(0, 60_000);
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.onFailure());
+        assertFalse(breaker.allowRequest());
+    }
+}
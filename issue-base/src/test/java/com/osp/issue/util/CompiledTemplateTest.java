@@ -0,0 +1,56 @@
+package com.osp.issue.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 预编译模板：文本段与占位符段按顺序输出，未绑定与未闭合的占位符
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 15:40
+ **/
+public class CompiledTemplateTest {
+
+    private static CompiledTemplate<Map<String, String>> compile(String template) {
+        return CompiledTemplate.compile(template,
+            key -> "unknown".equals(key) ? null : (context, out) -> out.append(context.get(key)));
+    }
+
+    private static String render(CompiledTemplate<Map<String, String>> template, Map<String, String> context) {
+        StringBuilder out = new StringBuilder();
+        template.render(context, out);
+        return out.toString();
+    }
+
+    @Test
+    public void rendersPlaceholdersInOrder() {
+        Map<String, String> context = new HashMap<>();
+        context.put("place", "FooService.bar");
+        context.put("errorMessage", "连接超时");
+        CompiledTemplate<Map<String, String>> template = compile("<p>${place}</p><p>${ errorMessage }</p>${place}");
+        assertEquals("<p>FooService.bar</p><p>连接超时</p>FooService.bar", render(template, context));
+        assertEquals("<p></p><p></p>".length(), template.getLiteralLength());
+    }
+
+    @Test
+    public void unboundPlaceholderRendersNothing() {
+        assertEquals("ab", render(compile("a${unknown}b"), new HashMap<>()));
+    }
+
+    @Test
+    public void unclosedPlaceholderIsLiteral() {
+        CompiledTemplate<Map<String, String>> template = compile("a${place");
+        assertEquals("a${place", render(template, new HashMap<>()));
+        assertEquals(8, template.getLiteralLength());
+    }
+
+    @Test
+    public void templateWithoutPlaceholders() {
+        assertEquals("纯文本", render(compile("纯文本"), new HashMap<>()));
+        assertEquals("", render(compile(""), new HashMap<>()));
+    }
+}
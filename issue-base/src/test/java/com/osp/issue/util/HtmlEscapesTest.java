@@ -0,0 +1,44 @@
+package com.osp.issue.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * HTML转义：特殊字符替换、区间转义与null
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 15:45
+ **/
+public class HtmlEscapesTest {
+
+    private static String escape(CharSequence value) {
+        StringBuilder out = new StringBuilder("前缀");
+        HtmlEscapes.escape(value, out);
+        return out.substring(2);
+    }
+
+    @Test
+    public void escapesSpecialCharacters() {
+        assertEquals("&lt;a href=&quot;x&quot;&gt;Tom &amp; Jerry&#39;s&lt;/a&gt;",
+            escape("<a href=\"x\">Tom & Jerry's</a>"));
+    }
+
+    @Test
+    public void plainTextIsUnchanged() {
+        assertEquals("连接超时 10.0.0.1", escape("连接超时 10.0.0.1"));
+        assertEquals("", escape(""));
+    }
+
+    @Test
+    public void nullWritesNothing() {
+        assertEquals("", escape(null));
+    }
+
+    @Test
+    public void escapesOnlyTheGivenRange() {
+        StringBuilder out = new StringBuilder();
+        HtmlEscapes.escape("<a>&<b>", 3, 7, out);
+        assertEquals("&amp;&lt;b&gt;", out.toString());
+    }
+}
@@ -0,0 +1,66 @@
+package com.osp.issue.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 多条正则的并集：合并匹配、含反向引用与命名分组的规则单独编译、非法规则报错
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 15:20
+ **/
+public class PatternUnionTest {
+
+    @Test
+    public void emptyRulesCompileToNull() {
+        assertNull(PatternUnion.compile(null, "、"));
+        assertNull(PatternUnion.compile("  ", "、"));
+        assertNull(PatternUnion.compile("、、", "、"));
+    }
+
+    @Test
+    public void matchesAnyRuleAsWhole() {
+        PatternUnion union = PatternUnion.compile("foo\\d+、连接超时.*", "、");
+        assertTrue(union.matches("foo1"));
+        assertTrue(union.matches("连接超时：10.0.0.1"));
+        assertFalse("整体匹配，不是查找", union.matches("xfoo1"));
+        assertFalse(union.matches("foo"));
+    }
+
+    @Test
+    public void backReferenceKeepsItsOwnGroupNumbers() {
+        // 合并后第二条的\1会指向第一条的分组，必须单独编译
+        PatternUnion union = PatternUnion.compile("(a)b、(a|b)(b)\\2\\1", "、");
+        assertTrue(union.matches("ab"));
+        assertTrue(union.matches("abba"));
+        assertFalse(union.matches("abab"));
+    }
+
+    @Test
+    public void escapedBackslashIsNotBackReference() {
+        PatternUnion union = PatternUnion.compile("x\\\\1y", "、");
+        assertTrue(union.matches("x\\1y"));
+    }
+
+    @Test
+    public void namedGroupsDoNotClash() {
+        PatternUnion union = PatternUnion.compile("(?<c>z)\\k<c>、(?<c>y)x", "、");
+        assertTrue(union.matches("zz"));
+        assertTrue(union.matches("yx"));
+        assertFalse(union.matches("zy"));
+    }
+
+    @Test
+    public void invalidRuleIsReportedWithTheRule() {
+        try {
+            PatternUnion.compile("ok、(unclosed", "、");
+            fail("非法正则应报错");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("(unclosed"));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.osp.issue.util;
+
+import com.osp.issue.dto.ThrowableSnapshot;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 堆栈渲染：格式与StackTraceElement一致、框架栈帧折叠、高亮、深度限制与cause的“... n more”
+ *
+ * @author huangqiaowei
+ * @since 2019-08-06 16:00
+ **/
+public class StackTraceRendererTest {
+
+    private static final StackTraceElement APP = new StackTraceElement("com.osp.FooService", "bar", "FooService.java", 42);
+    private static final StackTraceElement THIRD = new StackTraceElement("org.apache.Foo", "run", null, -1);
+    private static final StackTraceElement NATIVE = new StackTraceElement("org.apache.Foo", "call", null, -2);
+    private static final StackTraceElement SPRING = new StackTraceElement("org.springframework.aop.Invoker", "invoke", "Invoker.java", 1);
+    private static final StackTraceElement DUBBO = new StackTraceElement("com.alibaba.dubbo.rpc.Filter", "invoke", "Filter.java", 2);
+    private static final StackTraceElement REFLECT = new StackTraceElement("sun.reflect.Method", "invoke", "Method.java", 3);
+
+    private static ThrowableSnapshot snapshot(Throwable throwable, StackTraceElement... frames) {
+        throwable.setStackTrace(frames);
+        return ThrowableSnapshot.of(throwable, 64, 8);
+    }
+
+    private static String render(StackTraceRenderer renderer, ThrowableSnapshot snapshot) {
+        StringBuilder out = new StringBuilder();
+        renderer.render(snapshot, out);
+        return out.toString();
+    }
+
+    private static int lines(String html) {
+        return html.split("<br>", -1).length - 1;
+    }
+
+    @Test
+    public void framesFollowStackTraceElementFormat() {
+        String html = render(StackTraceRenderer.defaults(),
+            snapshot(new IllegalStateException("a<b"), APP, THIRD, NATIVE));
+        assertTrue(html.contains("java.lang.IllegalStateException: a&lt;b<br>"));
+        assertTrue(html.contains("\tat com.osp.FooService.bar(FooService.java:42)"));
+        assertTrue(html.contains("\tat org.apache.Foo.run(Unknown Source)<br>"));
+        assertTrue(html.contains("\tat org.apache.Foo.call(Native Method)<br>"));
+        assertEquals(4, lines(html));
+    }
+
+    @Test
+    public void highlightsConfiguredPackages() {
+        String html = render(StackTraceRenderer.defaults(), snapshot(new IllegalStateException(), APP, THIRD));
+        assertTrue(html.contains("<span style=\"color:#c0f\">\tat com.osp.FooService.bar(FooService.java:42)</span>"));
+        assertFalse(html.contains("<span style=\"color:#c0f\">\tat org.apache"));
+    }
+
+    @Test
+    public void collapsesFrameworkRuns() {
+        String html = render(StackTraceRenderer.defaults(),
+            snapshot(new IllegalStateException(), APP, SPRING, DUBBO, REFLECT, SPRING, APP));
+        assertTrue(html, html.contains("... 折叠4个框架栈帧（org.springframework、com.alibaba.dubbo、sun.reflect）"));
+        // 首行、两个应用栈帧、一个折叠行
+        assertEquals(4, lines(html));
+    }
+
+    @Test
+    public void shortFrameworkRunIsNotCollapsed() {
+        String html = render(StackTraceRenderer.defaults(),
+            snapshot(new IllegalStateException(), APP, SPRING, DUBBO, APP));
+        assertFalse(html.contains("折叠"));
+        assertEquals(5, lines(html));
+    }
+
+    @Test
+    public void collapseCanBeDisabled() {
+        StackTraceRenderer renderer = new StackTraceRenderer(Collections.<String>emptyList(),
+            StackTraceRenderer.DEFAULT_COLLAPSE_PACKAGES, 1, 0);
+        String html = render(renderer, snapshot(new IllegalStateException(), SPRING, DUBBO, REFLECT));
+        assertFalse(html.contains("折叠"));
+        assertFalse(html.contains("color:#c0f"));
+    }
+
+    @Test
+    public void maxDepthOmitsRemainingFrames() {
+        StackTraceRenderer renderer = new StackTraceRenderer(StackTraceRenderer.DEFAULT_HIGHLIGHT_PACKAGES,
+            StackTraceRenderer.DEFAULT_COLLAPSE_PACKAGES, 3, 2);
+        String html = render(renderer, snapshot(new IllegalStateException(), APP, SPRING, DUBBO, REFLECT, APP, THIRD));
+        assertTrue(html, html.contains("... 省略2帧"));
+        assertFalse(html.contains("org.apache.Foo"));
+    }
+
+    @Test
+    public void causeSharesEnclosingFrames() {
+        IllegalStateException cause = new IllegalStateException("底层");
+        cause.setStackTrace(new StackTraceElement[]{THIRD, APP, NATIVE});
+        IllegalArgumentException outer = new IllegalArgumentException("外层", cause);
+        String html = render(StackTraceRenderer.defaults(), snapshot(outer, APP, NATIVE));
+        assertTrue(html.contains("Caused by: java.lang.IllegalStateException: 底层<br>"));
+        assertTrue(html, html.contains("\t... 2 more<br>"));
+        assertTrue(html.contains("java.lang.IllegalArgumentException: 外层<br>"));
+    }
+}
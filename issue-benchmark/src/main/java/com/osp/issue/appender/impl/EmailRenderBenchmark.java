@@ -0,0 +1,78 @@
+package com.osp.issue.appender.impl;
+
+import com.osp.issue.benchmark.Alarms;
+import com.osp.issue.dto.BaseAlarmDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 邮件正文渲染开销（含堆栈渲染），与EmailAlarmAppender同包以便直接调用makeupEmailContent，不发送邮件
+ *
+ * @author huangqiaowei
+ * @since 2019-06-26 11:15
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailRenderBenchmark {
+
+    /**
+     * 栈深度：直连调用与经过Dubbo/Spring多层代理的调用
+     */
+    @Param({"10", "150"})
+    private int depth;
+
+    private EmailAlarmAppender appender;
+    private BaseAlarmDto alarm;
+    private BaseAlarmDto withoutException;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        LinkedHashMap config = new LinkedHashMap();
+        config.put("recipientCcs", "cc@osp.com");
+        config.put("recipientTo", "to@osp.com");
+        config.put("subject", "benchmark");
+        // 只渲染不发送，账号与地址仅为满足必填项
+        config.put("username", "benchmark@osp.com");
+        config.put("url", "http://127.0.0.1:1/ews/Exchange.asmx");
+        config.put("bottom", "issue-benchmark");
+        config.put("env", "benchmark");
+        appender = new EmailAlarmAppender();
+        appender.init(config);
+        alarm = Alarms.alarm(Alarms.exception(depth), Alarms.PLACE);
+        withoutException = new BaseAlarmDto();
+        withoutException.setPlace(Alarms.PLACE);
+        withoutException.setErrorMessage("订单创建失败");
+    }
+
+    @Benchmark
+    public String render() {
+        return appender.makeupEmailContent(alarm);
+    }
+
+    /**
+     * 不含堆栈，差值即堆栈渲染开销
+     *
+     * @return 邮件正文
+     */
+    @Benchmark
+    public String renderWithoutStackTrace() {
+        return appender.makeupEmailContent(withoutException);
+    }
+}
@@ -0,0 +1,104 @@
+package com.osp.issue.benchmark;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.osp.issue.dubbo.AlarmExceptionFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AlarmExceptionFilter.invoke 在成功与失败两条路径上给RPC调用增加的开销，以直接调用invoker为基线
+ *
+ * @author huangqiaowei
+ * @since 2019-06-26 11:10
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlarmExceptionFilterBenchmark {
+
+    private AlarmExceptionFilter filter;
+    private Invoker<OrderService> successInvoker;
+    private Invoker<OrderService> failureInvoker;
+    private Invocation invocation;
+
+    @Setup
+    public void setup() {
+        filter = new AlarmExceptionFilter();
+        successInvoker = new StubInvoker(new RpcResult("ok"));
+        failureInvoker = new StubInvoker(new RpcResult(Alarms.exception(40)));
+        invocation = new RpcInvocation("createOrder", new Class<?>[]{String.class, Long.class},
+            new Object[]{"20190626001", 1001L});
+    }
+
+    @Benchmark
+    public Result baseline() {
+        return successInvoker.invoke(invocation);
+    }
+
+    @Benchmark
+    public Result success() {
+        return filter.invoke(successInvoker, invocation);
+    }
+
+    @Benchmark
+    public Result failure() {
+        return filter.invoke(failureInvoker, invocation);
+    }
+
+    public interface OrderService {
+
+        String createOrder(String orderId, Long skuId);
+    }
+
+    private static final class StubInvoker implements Invoker<OrderService> {
+
+        private final Result result;
+
+        private StubInvoker(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        public Class<OrderService> getInterface() {
+            return OrderService.class;
+        }
+
+        @Override
+        public Result invoke(Invocation invocation) {
+            return result;
+        }
+
+        @Override
+        public URL getUrl() {
+            return null;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public void destroy() {
+            // 无资源
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.osp.issue.benchmark;
+
+import com.osp.issue.dto.BaseAlarmDto;
+
+/**
+ * 基准测试用的报警与异常
+ *
+ * @author huangqiaowei
+ * @since 2019-06-26 10:05
+ **/
+public final class Alarms {
+
+    public static final String PLACE = "com.osp.order.api.OrderService.createOrder";
+
+    private Alarms() {
+    }
+
+    /**
+     * 构造指定栈深度、带一层cause的异常，模拟经过Dubbo/Spring调用链的业务异常
+     *
+     * @param depth 栈深度
+     * @return 异常
+     */
+    public static RuntimeException exception(int depth) {
+        try {
+            recurse(depth);
+            throw new IllegalStateException("unreachable");
+        } catch (IllegalArgumentException e) {
+            return new IllegalStateException("订单创建失败，orderId=20190626001", e);
+        }
+    }
+
+    private static void recurse(int depth) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("库存不足 <skuId=1001>");
+        }
+        recurse(depth - 1);
+    }
+
+    public static BaseAlarmDto alarm(Throwable throwable, String place) {
+        return new BaseAlarmDto(throwable, "benchmark", "[{\"orderId\":\"20190626001\"}]", place);
+    }
+}
@@ -0,0 +1,30 @@
+package com.osp.issue.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口：在JMH命令行参数基础上默认开启gc profiler，吞吐与分配率一并输出。
+ * 用法：java -jar issue-benchmark/target/benchmarks.jar [JMH参数，如 NoticeBenchmark -t 8]
+ *
+ * @author huangqiaowei
+ * @since 2019-06-26 11:40
+ **/
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
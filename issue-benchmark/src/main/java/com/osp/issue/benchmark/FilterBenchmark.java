@@ -0,0 +1,82 @@
+package com.osp.issue.benchmark;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.filter.impl.FilterByMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FilterByMsg在一组接近线上的规则下的过滤开销，与逐条String.matches的旧实现对比
+ *
+ * @author huangqiaowei
+ * @since 2019-06-26 10:45
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+    private static final String RULES = ".*Broken pipe.*、.*getWriter\\(\\)\\s+has.*、.*Connection reset by peer.*、"
+        + ".*远程主机强迫关闭了一个现有的连接.*、.*Request method '\\w+' not supported.*、.*Required \\w+ parameter.*、"
+        + ".*Could not read JSON.*、.*Maximum upload size exceeded.*、.*timeout.*、.*token已过期.*";
+
+    private FilterByMsg filter;
+    private String[] rules;
+    private BaseAlarmDto hit;
+    private BaseAlarmDto miss;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        LinkedHashMap config = new LinkedHashMap();
+        config.put("rule", RULES);
+        config.put("exceptions", "org.apache.catalina.connector.ClientAbortException、java.util.concurrent.CancellationException");
+        config.put("places", ".*HealthCheck.*");
+        config.put("operators", "monitor、probe");
+        filter = new FilterByMsg();
+        filter.init(config);
+        rules = RULES.split("、");
+        hit = Alarms.alarm(new RuntimeException("java.io.IOException: Connection reset by peer"), Alarms.PLACE);
+        miss = Alarms.alarm(Alarms.exception(10), Alarms.PLACE);
+    }
+
+    @Benchmark
+    public boolean compiledHit() {
+        return filter.filter(hit);
+    }
+
+    @Benchmark
+    public boolean compiledMiss() {
+        return filter.filter(miss);
+    }
+
+    /**
+     * 旧实现：每条规则每次都重新编译正则
+     *
+     * @return 是否命中
+     */
+    @Benchmark
+    public boolean legacyMiss() {
+        String message = miss.getErrorMessage() == null ? "" : miss.getErrorMessage();
+        for (String rule : rules) {
+            if (message.matches(rule)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
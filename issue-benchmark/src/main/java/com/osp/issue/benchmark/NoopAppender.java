@@ -0,0 +1,18 @@
+package com.osp.issue.benchmark;
+
+import com.osp.issue.appender.Appender;
+import com.osp.issue.dto.BaseAlarmDto;
+
+/**
+ * 空appender，基准测试完全离线运行
+ *
+ * @author huangqiaowei
+ * @since 2019-06-26 10:02
+ **/
+public class NoopAppender implements Appender {
+
+    @Override
+    public void append(BaseAlarmDto baseAlarmDto) {
+        // 不做任何处理
+    }
+}
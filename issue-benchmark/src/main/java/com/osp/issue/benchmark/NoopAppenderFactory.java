@@ -0,0 +1,24 @@
+package com.osp.issue.benchmark;
+
+import com.osp.issue.appender.Appender;
+import com.osp.issue.appender.AppenderFactory;
+import com.osp.issue.util.PluginConfig;
+
+/**
+ * 空appender工厂
+ *
+ * @author huangqiaowei
+ * @since 2019-07-22 11:20
+ **/
+public class NoopAppenderFactory implements AppenderFactory {
+
+    @Override
+    public String getName() {
+        return "NoopAppender";
+    }
+
+    @Override
+    public Appender create(PluginConfig config) {
+        return new NoopAppender();
+    }
+}
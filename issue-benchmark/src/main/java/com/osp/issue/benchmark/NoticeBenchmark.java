@@ -0,0 +1,109 @@
+package com.osp.issue.benchmark;
+
+import com.osp.issue.dto.BaseAlarmDto;
+import com.osp.issue.manage.AlarmManage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AlarmManage.notice() 在1到N个生产者线程竞争下的开销，即一次报警对业务线程的代价。
+ * 报警对象在调用线程上创建，与业务代码的实际用法一致
+ *
+ * @author huangqiaowei
+ * @since 2019-06-26 10:20
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NoticeBenchmark {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private AlarmManage alarmManage;
+    private RuntimeException exception;
+    private RuntimeException noise;
+
+    @Setup
+    public void setup() {
+        alarmManage = AlarmManage.getInstance();
+        exception = Alarms.exception(40);
+        noise = new RuntimeException("java.io.IOException: Broken pipe");
+    }
+
+    /**
+     * 同一异常风暴：命中去重窗口
+     */
+    @Benchmark
+    @Threads(1)
+    public void repeated1() {
+        alarmManage.notice(Alarms.alarm(exception, Alarms.PLACE));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void repeated4() {
+        alarmManage.notice(Alarms.alarm(exception, Alarms.PLACE));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void repeatedMax() {
+        alarmManage.notice(Alarms.alarm(exception, Alarms.PLACE));
+    }
+
+    /**
+     * 各不相同的报警：进入队列，队满后走溢出策略
+     */
+    @Benchmark
+    @Threads(1)
+    public void distinct1() {
+        alarmManage.notice(Alarms.alarm(exception, Alarms.PLACE + SEQUENCE.incrementAndGet()));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void distinct4() {
+        alarmManage.notice(Alarms.alarm(exception, Alarms.PLACE + SEQUENCE.incrementAndGet()));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void distinctMax() {
+        alarmManage.notice(Alarms.alarm(exception, Alarms.PLACE + SEQUENCE.incrementAndGet()));
+    }
+
+    /**
+     * 已知噪音：被前置过滤器拦截
+     */
+    @Benchmark
+    @Threads(4)
+    public void preFiltered4() {
+        alarmManage.notice(Alarms.alarm(noise, Alarms.PLACE));
+    }
+
+    /**
+     * 只创建报警不通知，用于扣除异常快照本身的开销
+     *
+     * @return 报警
+     */
+    @Benchmark
+    @Threads(1)
+    public BaseAlarmDto createOnly() {
+        return Alarms.alarm(exception, Alarms.PLACE);
+    }
+}
@@ -0,0 +1,34 @@
+package com.osp.issue.dubbo;
+
+/**
+ * 成功调用的访问日志模式
+ *
+ * @author huangqiaowei
+ * @since 2019-07-03 14:05
+ **/
+public enum AccessLogMode {
+
+    /**
+     * 不记录
+     */
+    OFF,
+
+    /**
+     * 按sampleRate抽样记录
+     */
+    SAMPLED,
+
+    /**
+     * 只记录超过slowThreshold的调用
+     */
+    SLOW;
+
+    static AccessLogMode of(String name) {
+        for (AccessLogMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("不支持的访问日志模式：" + name);
+    }
+}
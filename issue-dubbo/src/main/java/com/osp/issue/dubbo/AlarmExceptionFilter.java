@@ -1,6 +1,5 @@
 package com.osp.issue.dubbo;
 
-import com.alibaba.dubbo.common.json.JSON;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -8,13 +7,16 @@ import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.osp.issue.dto.BaseAlarmDto;
 import com.osp.issue.manage.AlarmManage;
+import com.osp.issue.util.AlarmConfiguration;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * dubbo统一异常捕获，发送邮件 <br>
+ * 成功调用默认不记录访问日志，只做一次耗时记录，可通过settings.accessLog开启抽样或慢调用日志
  *
  * @author huangqiaowei
  * @since 2019-05-31 16:15
@@ -24,6 +26,32 @@ public class AlarmExceptionFilter implements Filter {
 
     private AlarmManage alarmManage = AlarmManage.getInstance();
 
+    private final AccessLogMode accessLogMode;
+    private final int sampleRate;
+    private final long slowThresholdNanos;
+    private final ArgumentSerializer argumentSerializer;
+
+    public AlarmExceptionFilter() {
+        AlarmConfiguration configuration = alarmManage.getConfiguration();
+        this.accessLogMode = accessLogMode(configuration);
+        // 数值配置有误时AlarmConfiguration记录错误并使用默认值
+        this.sampleRate = Math.max(1, configuration.getInt("accessLog.sampleRate", 100));
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getLong("accessLog.slowThreshold", 1000));
+        this.argumentSerializer = new ArgumentSerializer(configuration);
+    }
+
+    /**
+     * 配置有误时不记录访问日志，不能因报警设置阻止服务暴露
+     */
+    private static AccessLogMode accessLogMode(AlarmConfiguration configuration) {
+        try {
+            return AccessLogMode.of(configuration.getString("accessLog.mode", AccessLogMode.OFF.name()));
+        } catch (IllegalArgumentException e) {
+            log.error("访问日志模式有误，不记录访问日志，详情请阅读README.md文档", e);
+            return AccessLogMode.OFF;
+        }
+    }
+
     /**
      * do invoke filter.
      * <p>
@@ -41,19 +69,29 @@ public class AlarmExceptionFilter implements Filter {
      */
     @Override
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         Result result = invoker.invoke(invocation);
-        log.info("方法：{},方法参数：{},耗时：{}ms", invocation.getMethodName(), invocation.getArguments(), (System.currentTimeMillis() - start));
+        long elapsed = System.nanoTime() - start;
+        alarmManage.recordLatency(invoker.getInterface(), invocation.getMethodName(), elapsed);
+        if (accessLogMode != AccessLogMode.OFF && shouldLog(elapsed)) {
+            log.info("方法：{},方法参数：{},耗时：{}ms", invocation.getMethodName(), invocation.getArguments(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
 
         if (Objects.nonNull(result.getException())) {
-            try {
-                alarmManage.notice(new BaseAlarmDto(result.getException(), null, JSON.json(invocation.getArguments()),
-                        invocation.getClass().getCanonicalName() + "." + invocation.getMethodName()));
-            } catch (IOException e) {
-                log.warn("发送邮件失败", e);
-            }
+            // 地点为接口全名.方法名，与脱敏配置的方法全名一致；参数只保存引用，由分发线程序列化
+            String method = invoker.getInterface().getName() + "." + invocation.getMethodName();
+            BaseAlarmDto alarm = new BaseAlarmDto(result.getException(), null, null, method);
+            alarm.setExtraSupplier(argumentSerializer.snapshot(method, invocation.getArguments()));
+            alarmManage.notice(alarm);
         }
 
         return result;
     }
+
+    private boolean shouldLog(long elapsed) {
+        if (accessLogMode == AccessLogMode.SLOW) {
+            return elapsed >= slowThresholdNanos;
+        }
+        return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
 }
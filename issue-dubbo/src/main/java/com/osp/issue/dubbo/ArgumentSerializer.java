@@ -0,0 +1,105 @@
+package com.osp.issue.dubbo;
+
+import com.alibaba.dubbo.common.json.JSON;
+import com.osp.issue.util.AlarmConfiguration;
+import com.osp.issue.util.BoundedWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * RPC参数序列化：报警时只保存参数引用，到分发线程上才流式序列化，超过字节上限截断，并按方法脱敏指定位置的参数
+ *
+ * @author huangqiaowei
+ * @since 2019-07-05 11:02
+ **/
+@Slf4j
+class ArgumentSerializer {
+
+    private static final String REDACTED = "\"******\"";
+    private static final String ALL = "*";
+    private static final String SEPARATOR = "、";
+    private static final int DEFAULT_MAX_BYTES = 4096;
+
+    private final int maxBytes;
+    /**
+     * 方法全名 -> 需要脱敏的参数下标，包含-1表示全部脱敏
+     */
+    private final Map<String, Set<Integer>> redactions;
+
+    ArgumentSerializer(AlarmConfiguration configuration) {
+        this.maxBytes = configuration.getInt("arguments.maxBytes", DEFAULT_MAX_BYTES);
+        Object redact = configuration.getSetting("arguments.redact");
+        this.redactions = redact instanceof Map ? parse((Map<?, ?>) redact) : Collections.emptyMap();
+    }
+
+    private static Map<String, Set<Integer>> parse(Map<?, ?> redact) {
+        Map<String, Set<Integer>> result = new HashMap<>();
+        redact.forEach((method, indexes) -> {
+            Set<Integer> set = new HashSet<>();
+            Collection<?> items = indexes instanceof Collection ? (Collection<?>) indexes
+                : Arrays.asList(String.valueOf(indexes).split(SEPARATOR));
+            for (Object item : items) {
+                String value = String.valueOf(item).trim();
+                try {
+                    set.add(ALL.equals(value) ? -1 : Integer.valueOf(value));
+                } catch (NumberFormatException e) {
+                    // 宁可多脱敏：下标有误时该方法的参数全部脱敏
+                    log.error("参数脱敏配置有误，{}的参数将全部脱敏：{}", method, indexes);
+                    set.add(-1);
+                }
+            }
+            result.put(String.valueOf(method), Collections.unmodifiableSet(set));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 创建参数快照，业务线程上只保存引用
+     *
+     * @param method    方法全名：接口全限定名.方法名
+     * @param arguments 参数
+     * @return 延迟序列化
+     */
+    Supplier<String> snapshot(String method, Object[] arguments) {
+        Set<Integer> redacted = redactions.getOrDefault(method, Collections.emptySet());
+        return () -> serialize(arguments, redacted);
+    }
+
+    private String serialize(Object[] arguments, Set<Integer> redacted) {
+        if (arguments == null) {
+            return "[]";
+        }
+        BoundedWriter writer = new BoundedWriter(maxBytes);
+        try {
+            writer.write('[');
+            for (int i = 0; i < arguments.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (redacted.contains(-1) || redacted.contains(i)) {
+                    writer.write(REDACTED);
+                } else {
+                    JSON.json(arguments[i], writer);
+                }
+            }
+            writer.write(']');
+        } catch (IOException | RuntimeException e) {
+            if (writer.isTruncated()) {
+                writer.appendUnbounded("...（已截断，上限" + maxBytes + "字节）");
+            } else {
+                log.warn("参数序列化失败", e);
+                writer.appendUnbounded("...（序列化失败：" + e + "）");
+            }
+        }
+        return writer.toString();
+    }
+}